@@ -0,0 +1,85 @@
+package com.thanos.common.crypto;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.util.Memoable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BCCryptoHash.java description：{@link CryptoHash} over a bouncy castle Digest,
+ * e.g. SM3Digest. The digest must be {@link Memoable} to be copied.
+ */
+public class BCCryptoHash implements CryptoHash {
+
+    // copy buffer of direct ByteBuffers, bouncy castle digests only read arrays
+    private static final int DIRECT_COPY_CHUNK_SIZE = 8192;
+
+    private final int type;
+
+    private final Digest engine;
+
+    private byte[] chunk;
+
+    public BCCryptoHash(int type, Digest engine) {
+        this.type = type;
+        this.engine = engine;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return engine.getDigestSize();
+    }
+
+    @Override
+    public void update(byte input) {
+        engine.update(input);
+    }
+
+    @Override
+    public void update(byte[] input, int offset, int length) {
+        engine.update(input, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer input) {
+        if (input.hasArray()) {
+            engine.update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            return;
+        }
+        if (chunk == null) {
+            chunk = new byte[DIRECT_COPY_CHUNK_SIZE];
+        }
+        while (input.hasRemaining()) {
+            int length = Math.min(chunk.length, input.remaining());
+            input.get(chunk, 0, length);
+            engine.update(chunk, 0, length);
+        }
+    }
+
+    @Override
+    public int digest(byte[] out, int outOffset) {
+        if (out.length - outOffset < engine.getDigestSize()) {
+            throw new IllegalArgumentException("Output buffer too short for the hash");
+        }
+        return engine.doFinal(out, outOffset);
+    }
+
+    @Override
+    public void reset() {
+        engine.reset();
+    }
+
+    @Override
+    public CryptoHash copy() {
+        if (!(engine instanceof Memoable)) {
+            throw new UnsupportedOperationException(engine.getAlgorithmName() + " can't be copied");
+        }
+        return new BCCryptoHash(type, (Digest) ((Memoable) engine).copy());
+    }
+}
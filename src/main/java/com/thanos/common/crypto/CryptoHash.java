@@ -1,10 +1,77 @@
 package com.thanos.common.crypto;
 
+import java.nio.ByteBuffer;
+
 /**
- * 类CryptoHash.java的实现描述：
+ * 类CryptoHash.java的实现描述：incremental hash engine. Resolve one with
+ * {@link CryptoHashRegistry#create(int)} or {@link CryptoHashRegistry#local(int)}
+ * and keep it: updating and {@link #digest(byte[], int)} then need neither a
+ * lookup nor an allocation. An engine is not thread safe.
  *
  * @Author laiyiyu create on 2019-12-11 10:01:32
  */
 public interface CryptoHash {
-    byte[] getHash();
+
+    /**
+     * @return code of the algorithm in {@link CryptoHashRegistry}
+     */
+    int getType();
+
+    /**
+     * @return length of the hash in bytes
+     */
+    int getDigestLength();
+
+    void update(byte input);
+
+    void update(byte[] input, int offset, int length);
+
+    default void update(byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Hashes the remaining bytes of input, which is consumed
+     */
+    void update(ByteBuffer input);
+
+    /**
+     * Finishes the hash, writes it at outOffset and resets the engine
+     *
+     * @return number of bytes written, i.e. {@link #getDigestLength()}
+     */
+    int digest(byte[] out, int outOffset);
+
+    default byte[] digest() {
+        byte[] out = new byte[getDigestLength()];
+        digest(out, 0);
+        return out;
+    }
+
+    /**
+     * Hash of input alone, whatever was updated before
+     */
+    default byte[] hash(byte[] input) {
+        reset();
+        update(input, 0, input.length);
+        return digest();
+    }
+
+    /**
+     * Hash of what was updated so far, the engine is reset
+     *
+     * @deprecated kept from the former interface, use {@link #digest()}
+     */
+    @Deprecated
+    default byte[] getHash() {
+        return digest();
+    }
+
+    void reset();
+
+    /**
+     * @return an independent engine in the same state, e.g. to hash several
+     * messages sharing a prefix
+     */
+    CryptoHash copy();
 }
@@ -0,0 +1,88 @@
+package com.thanos.common.crypto;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * CryptoHashRegistry.java description：hash engine factories keyed by a one byte
+ * code, the {@link CryptoHashType}s being registered from the start. Lookups index
+ * an array, and {@link #local(int)} hands out the calling thread's engine of a code,
+ * created on first use, so a hash costs no allocation either.
+ * <p>
+ * Other algorithms are plugged with {@link #register(int, Supplier)}, usually at startup.
+ */
+public final class CryptoHashRegistry {
+
+    private static final int CODE_COUNT = 256;
+
+    // read without locking
+    private static final AtomicReferenceArray<Supplier<CryptoHash>> FACTORIES = new AtomicReferenceArray<>(CODE_COUNT);
+
+    private static final ThreadLocal<CryptoHash[]> LOCAL = ThreadLocal.withInitial(() -> new CryptoHash[CODE_COUNT]);
+
+    static {
+        for (CryptoHashType type : CryptoHashType.values()) {
+            register(type.getCode(), type::newEngine);
+        }
+    }
+
+    private CryptoHashRegistry() {
+    }
+
+    /**
+     * @param factory creates engines whose {@link CryptoHash#getType()} is code
+     */
+    public static void register(int code, Supplier<CryptoHash> factory) {
+        checkCode(code);
+        if (!FACTORIES.compareAndSet(code, null, factory)) {
+            throw new RuntimeException(String.format("Hash code %s is already registered", code));
+        }
+    }
+
+    public static boolean contains(int code) {
+        return code >= 0 && code < CODE_COUNT && FACTORIES.get(code) != null;
+    }
+
+    /**
+     * @return a new engine, owned by the caller
+     */
+    public static CryptoHash create(int code) {
+        checkCode(code);
+        Supplier<CryptoHash> factory = FACTORIES.get(code);
+        if (factory == null) {
+            throw new RuntimeException(String.format("No hash registered for code %s", code));
+        }
+        return factory.get();
+    }
+
+    public static CryptoHash create(CryptoHashType type) {
+        return create(type.getCode());
+    }
+
+    /**
+     * @return the reset engine of the calling thread, it must not be kept nor
+     * passed to other threads
+     */
+    public static CryptoHash local(int code) {
+        checkCode(code);
+        CryptoHash[] engines = LOCAL.get();
+        CryptoHash engine = engines[code];
+        if (engine == null) {
+            engine = create(code);
+            engines[code] = engine;
+        } else {
+            engine.reset();
+        }
+        return engine;
+    }
+
+    public static CryptoHash local(CryptoHashType type) {
+        return local(type.getCode());
+    }
+
+    private static void checkCode(int code) {
+        if (code < 0 || code >= CODE_COUNT) {
+            throw new IllegalArgumentException(String.format("Hash code %s is not a byte", code));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.thanos.common.crypto;
+
+import com.thanos.common.crypto.cryptohash.Keccak256;
+import com.thanos.common.crypto.cryptohash.Keccak512;
+import org.bouncycastle.crypto.digests.SM3Digest;
+
+/**
+ * CryptoHashType.java description：built in hash algorithms, registered in
+ * {@link CryptoHashRegistry} under their code.
+ */
+public enum CryptoHashType {
+    KECCAK_256(1, "KECCAK-256") {
+        @Override
+        public CryptoHash newEngine() {
+            return new KeccakCryptoHash(getCode(), new Keccak256());
+        }
+    },
+    KECCAK_512(2, "KECCAK-512") {
+        @Override
+        public CryptoHash newEngine() {
+            return new KeccakCryptoHash(getCode(), new Keccak512());
+        }
+    },
+    SHA_256(3, "SHA-256") {
+        @Override
+        public CryptoHash newEngine() {
+            return new JdkCryptoHash(getCode(), "SHA-256");
+        }
+    },
+    SM3(4, "SM3") {
+        @Override
+        public CryptoHash newEngine() {
+            return new BCCryptoHash(getCode(), new SM3Digest());
+        }
+    };
+
+    private int code;
+
+    private String description;
+
+    CryptoHashType(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public abstract CryptoHash newEngine();
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public static CryptoHashType getHashTypeByCode(int code) {
+        for (CryptoHashType item : CryptoHashType.values()) {
+            if (item.getCode() == code) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    public static CryptoHashType getHashTypeByDescription(String description) {
+        for (CryptoHashType item : CryptoHashType.values()) {
+            if (item.getDescription().equalsIgnoreCase(description)) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
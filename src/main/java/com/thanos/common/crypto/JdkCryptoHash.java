@@ -0,0 +1,79 @@
+package com.thanos.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * JdkCryptoHash.java description：{@link CryptoHash} over a JDK MessageDigest,
+ * looked up once when the engine is created.
+ */
+public class JdkCryptoHash implements CryptoHash {
+
+    private final int type;
+
+    private final MessageDigest engine;
+
+    public JdkCryptoHash(int type, String algorithm) {
+        this.type = type;
+        try {
+            this.engine = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private JdkCryptoHash(int type, MessageDigest engine) {
+        this.type = type;
+        this.engine = engine;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return engine.getDigestLength();
+    }
+
+    @Override
+    public void update(byte input) {
+        engine.update(input);
+    }
+
+    @Override
+    public void update(byte[] input, int offset, int length) {
+        engine.update(input, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer input) {
+        engine.update(input);
+    }
+
+    @Override
+    public int digest(byte[] out, int outOffset) {
+        try {
+            return engine.digest(out, outOffset, engine.getDigestLength());
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Output buffer too short for the hash", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        engine.reset();
+    }
+
+    @Override
+    public CryptoHash copy() {
+        try {
+            return new JdkCryptoHash(type, (MessageDigest) engine.clone());
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.thanos.common.crypto;
+
+import com.thanos.common.crypto.cryptohash.DigestEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * KeccakCryptoHash.java description：{@link CryptoHash} over the keccak engines (or any DigestEngine) of
+ * the cryptohash package.
+ */
+public class KeccakCryptoHash implements CryptoHash {
+
+    private final int type;
+
+    private final DigestEngine engine;
+
+    public KeccakCryptoHash(int type, DigestEngine engine) {
+        this.type = type;
+        this.engine = engine;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return engine.getDigestLength();
+    }
+
+    @Override
+    public void update(byte input) {
+        engine.update(input);
+    }
+
+    @Override
+    public void update(byte[] input, int offset, int length) {
+        engine.update(input, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer input) {
+        engine.update(input);
+    }
+
+    @Override
+    public int digest(byte[] out, int outOffset) {
+        // the engine pads its state before writing, it must not fail half way
+        if (out.length - outOffset < engine.getDigestLength()) {
+            throw new IllegalArgumentException("Output buffer too short for the hash");
+        }
+        return engine.digest(out, outOffset, engine.getDigestLength());
+    }
+
+    @Override
+    public void reset() {
+        engine.reset();
+    }
+
+    @Override
+    public CryptoHash copy() {
+        return new KeccakCryptoHash(type, (DigestEngine) engine.copy());
+    }
+}
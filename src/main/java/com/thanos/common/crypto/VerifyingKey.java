@@ -1,6 +1,7 @@
 package com.thanos.common.crypto;
 
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SecurePublicKeyCache;
 import com.thanos.common.utils.ByteUtil;
 import org.spongycastle.util.encoders.Hex;
 
@@ -19,7 +20,7 @@ public class VerifyingKey {
 
     public VerifyingKey(byte[] key) {
         this.key = key;
-        this.securePublicKey = SecurePublicKey.generate(key);
+        this.securePublicKey = SecurePublicKeyCache.getDefault().get(key);
     }
 
     public byte[] getKey() {
@@ -19,6 +19,8 @@
 
 package com.thanos.common.crypto.cryptohash;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.MessageDigest;
 
 /**
@@ -204,6 +206,61 @@ public abstract class DigestEngine extends MessageDigest implements Digest {
 		}
 	}
 
+	/**
+	 * Insert the remaining bytes of {@code input}, which is consumed.
+	 * Whole blocks are processed straight from the buffer by
+	 * {@link #processBlock(ByteBuffer, int)}, so direct and mapped
+	 * buffers are not copied to the heap first.
+	 *
+	 * @param input   the data buffer
+	 */
+	protected void engineUpdate(ByteBuffer input)
+	{
+		int len = input.remaining();
+		if (inputLen > 0) {
+			int copyLen = blockLen - inputLen;
+			if (copyLen > len)
+				copyLen = len;
+			input.get(inputBuf, inputLen, copyLen);
+			inputLen += copyLen;
+			len -= copyLen;
+			if (inputLen < blockLen)
+				return;
+			processBlock(inputBuf);
+			blockCount ++;
+			inputLen = 0;
+		}
+		if (len >= blockLen) {
+			ByteBuffer blocks = input.slice()
+				.order(ByteOrder.LITTLE_ENDIAN);
+			int ptr = 0;
+			while (len - ptr >= blockLen) {
+				processBlock(blocks, ptr);
+				blockCount ++;
+				ptr += blockLen;
+			}
+			input.position(input.position() + ptr);
+			len -= ptr;
+		}
+		input.get(inputBuf, 0, len);
+		inputLen = len;
+	}
+
+	/**
+	 * Process one block of data held in a buffer. The default
+	 * implementation copies the block to the internal block buffer,
+	 * which is unused at that time, and calls {@link #processBlock}.
+	 *
+	 * @param data     the data buffer, in little-endian order
+	 * @param offset   the block offset in {@code data}
+	 */
+	protected void processBlock(ByteBuffer data, int offset)
+	{
+		for (int i = 0; i < blockLen; i ++)
+			inputBuf[i] = data.get(offset + i);
+		processBlock(inputBuf);
+	}
+
 	/**
 	 * Get the internal block length. This is the length (in
 	 * bytes) of the array which will be passed as parameter to
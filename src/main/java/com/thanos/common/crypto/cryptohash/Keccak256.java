@@ -78,14 +78,16 @@ public class Keccak256 extends KeccakCore {
 
 	@Override
 	protected byte[] engineDigest() {
-		return null;
+		return digest();
 	}
 
 	@Override
 	protected void engineUpdate(byte arg0) {
+		update(arg0);
 	}
 
 	@Override
 	protected void engineUpdate(byte[] arg0, int arg1, int arg2) {
+		update(arg0, arg1, arg2);
 	}
 }
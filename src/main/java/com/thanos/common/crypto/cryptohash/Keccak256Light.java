@@ -20,8 +20,16 @@
 package com.thanos.common.crypto.cryptohash;
 
 /**
- * <p>This class implements the Keccak-256 digest algorithm under the
- * {@link Digest} API.</p>
+ * <p>Keccak-256 specialised for short inputs. A message of at most
+ * {@link #SINGLE_BLOCK_LIMIT} bytes is padded into a single block and
+ * permuted once, the state living in 25 local longs with every step of
+ * a round unrolled, no block buffer and no lane complementing involved.
+ * Longer messages fall back to the generic {@link KeccakCore} engine.
+ * The output is the same as {@link Keccak256}.</p>
+ *
+ * <p>Use {@link #hash(byte[], int, int, byte[], int)} directly, or the
+ * instance through the {@code ETH-KECCAK-256-LIGHT} provider name; the
+ * instance takes the fast path when the whole input fits in one block.</p>
  *
  * <pre>
  * ==========================(LICENSE BEGIN)============================
@@ -56,6 +64,20 @@ package com.thanos.common.crypto.cryptohash;
 
 public class Keccak256Light extends KeccakCore {
 
+	/**
+	 * Rate of Keccak-256 in bytes, i.e. the block length.
+	 */
+	private static final int RATE = 136;
+
+	/**
+	 * Longest input hashed as a single block: one byte is
+	 * always needed for the padding.
+	 */
+	public static final int SINGLE_BLOCK_LIMIT = RATE - 1;
+
+	private static final ThreadLocal<Keccak256> FALLBACK =
+		ThreadLocal.withInitial(Keccak256::new);
+
 	/**
 	 * Create the engine.
 	 */
@@ -78,424 +100,474 @@ public class Keccak256Light extends KeccakCore {
 
 	@Override
 	protected byte[] engineDigest() {
-		return null;
+		return digest();
 	}
 
 	@Override
 	protected void engineUpdate(byte arg0) {
+		update(arg0);
 	}
 
 	@Override
 	protected void engineUpdate(byte[] arg0, int arg1, int arg2) {
+		update(arg0, arg1, arg2);
 	}
 
-	/** @see com.thanos.common.crypto.cryptohash.DigestEngine */
-	protected void processBlock(byte[] data)
+	/**
+	 * When no block has been processed yet, the buffered input is
+	 * short enough for the single block permutation.
+	 *
+	 * @see com.thanos.common.crypto.cryptohash.DigestEngine
+	 */
+	protected void doPadding(byte[] out, int off)
 	{
-		/* Input block */
-		for (int i = 0; i < data.length; i += 8)
-			A[i >>> 3] ^= decodeLELong(data, i);
+		if (getBlockCount() == 0) {
+			singleBlock(getBlockBuffer(), 0, flush(), out, off);
+		} else {
+			super.doPadding(out, off);
+		}
+	}
 
-		long t0, t1, t2, t3, t4;
-		long tt0, tt1, tt2, tt3, tt4;
-		long t, kt;
-		long c0, c1, c2, c3, c4, bnn;
+	/**
+	 * Compute the Keccak-256 of {@code len} bytes of {@code in}
+	 * into a new array.
+	 *
+	 * @param in    the input data
+	 * @param off   the input offset
+	 * @param len   the input length
+	 * @return  the 32 bytes hash
+	 */
+	public static byte[] hash(byte[] in, int off, int len)
+	{
+		byte[] out = new byte[32];
+		hash(in, off, len, out, 0);
+		return out;
+	}
 
+	/**
+	 * Compute the Keccak-256 of {@code len} bytes of {@code in}
+	 * and write the 32 bytes result into {@code out}.
+	 *
+	 * @param in       the input data
+	 * @param off      the input offset
+	 * @param len      the input length
+	 * @param out      the output buffer
+	 * @param outOff   the output offset
+	 */
+	public static void hash(byte[] in, int off, int len,
+		byte[] out, int outOff)
+	{
+		if (len <= SINGLE_BLOCK_LIMIT) {
+			singleBlock(in, off, len, out, outOff);
+			return;
+		}
+		Keccak256 engine = FALLBACK.get();
+		engine.reset();
+		engine.update(in, off, len);
+		engine.digest(out, outOff, 32);
+	}
+
+	/**
+	 * Compute the Keccak-256 of two messages of at most
+	 * {@link #SINGLE_BLOCK_LIMIT} bytes each. Their permutations are
+	 * interleaved step by step: the two dependency chains are
+	 * independent, so the core can issue them side by side. Meant for
+	 * batches of short messages, e.g. hashes, addresses and node ids.
+	 *
+	 * @param in0      the first message
+	 * @param off0     the first message offset
+	 * @param len0     the first message length
+	 * @param out0     the output buffer of the first hash
+	 * @param outOff0  the output offset of the first hash
+	 * @param in1      the second message
+	 * @param off1     the second message offset
+	 * @param len1     the second message length
+	 * @param out1     the output buffer of the second hash
+	 * @param outOff1  the output offset of the second hash
+	 */
+	public static void hash2(byte[] in0, int off0, int len0,
+		byte[] out0, int outOff0, byte[] in1, int off1, int len1,
+		byte[] out1, int outOff1)
+	{
+		if (len0 > SINGLE_BLOCK_LIMIT || len1 > SINGLE_BLOCK_LIMIT)
+			throw new IllegalArgumentException(
+				"Messages must fit in a single block");
 		/*
-		 * Unrolling four rounds kills performance big time
-		 * on Intel x86 Core2, in both 32-bit and 64-bit modes
-		 * (less than 1 MB/s instead of 55 MB/s on x86-64).
-		 * Unrolling two rounds appears to be fine.
+		 * a, b, c, d and t of the first state as in singleBlock(),
+		 * e, f, g, h and u of the second one.
 		 */
-		for (int j = 0; j < 1; j++) {
-
-			tt0 = A[ 1] ^ A[ 6];
-			tt1 = A[11] ^ A[16];
-			tt0 ^= A[21] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 4] ^ A[ 9];
-			tt3 = A[14] ^ A[19];
-			tt0 ^= A[24];
-			tt2 ^= tt3;
-			t0 = tt0 ^ tt2;
-
-			tt0 = A[ 2] ^ A[ 7];
-			tt1 = A[12] ^ A[17];
-			tt0 ^= A[22] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 0] ^ A[ 5];
-			tt3 = A[10] ^ A[15];
-			tt0 ^= A[20];
-			tt2 ^= tt3;
-			t1 = tt0 ^ tt2;
-
-			tt0 = A[ 3] ^ A[ 8];
-			tt1 = A[13] ^ A[18];
-			tt0 ^= A[23] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 1] ^ A[ 6];
-			tt3 = A[11] ^ A[16];
-			tt0 ^= A[21];
-			tt2 ^= tt3;
-			t2 = tt0 ^ tt2;
-
-			tt0 = A[ 4] ^ A[ 9];
-			tt1 = A[14] ^ A[19];
-			tt0 ^= A[24] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 2] ^ A[ 7];
-			tt3 = A[12] ^ A[17];
-			tt0 ^= A[22];
-			tt2 ^= tt3;
-			t3 = tt0 ^ tt2;
-
-			tt0 = A[ 0] ^ A[ 5];
-			tt1 = A[10] ^ A[15];
-			tt0 ^= A[20] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 3] ^ A[ 8];
-			tt3 = A[13] ^ A[18];
-			tt0 ^= A[23];
-			tt2 ^= tt3;
-			t4 = tt0 ^ tt2;
+		long a0 = lane(in0, off0, len0, 0);
+		long a1 = lane(in0, off0, len0, 1);
+		long a2 = lane(in0, off0, len0, 2);
+		long a3 = lane(in0, off0, len0, 3);
+		long a4 = lane(in0, off0, len0, 4);
+		long a5 = lane(in0, off0, len0, 5);
+		long a6 = lane(in0, off0, len0, 6);
+		long a7 = lane(in0, off0, len0, 7);
+		long a8 = lane(in0, off0, len0, 8);
+		long a9 = lane(in0, off0, len0, 9);
+		long a10 = lane(in0, off0, len0, 10);
+		long a11 = lane(in0, off0, len0, 11);
+		long a12 = lane(in0, off0, len0, 12);
+		long a13 = lane(in0, off0, len0, 13);
+		long a14 = lane(in0, off0, len0, 14);
+		long a15 = lane(in0, off0, len0, 15);
+		long a16 = lane(in0, off0, len0, 16);
+		long a17 = 0, a18 = 0, a19 = 0, a20 = 0;
+		long a21 = 0, a22 = 0, a23 = 0, a24 = 0;
+		long e0 = lane(in1, off1, len1, 0);
+		long e1 = lane(in1, off1, len1, 1);
+		long e2 = lane(in1, off1, len1, 2);
+		long e3 = lane(in1, off1, len1, 3);
+		long e4 = lane(in1, off1, len1, 4);
+		long e5 = lane(in1, off1, len1, 5);
+		long e6 = lane(in1, off1, len1, 6);
+		long e7 = lane(in1, off1, len1, 7);
+		long e8 = lane(in1, off1, len1, 8);
+		long e9 = lane(in1, off1, len1, 9);
+		long e10 = lane(in1, off1, len1, 10);
+		long e11 = lane(in1, off1, len1, 11);
+		long e12 = lane(in1, off1, len1, 12);
+		long e13 = lane(in1, off1, len1, 13);
+		long e14 = lane(in1, off1, len1, 14);
+		long e15 = lane(in1, off1, len1, 15);
+		long e16 = lane(in1, off1, len1, 16);
+		long e17 = 0, e18 = 0, e19 = 0, e20 = 0;
+		long e21 = 0, e22 = 0, e23 = 0, e24 = 0;
 
-			A[ 0] = A[ 0] ^ t0;
-			A[ 5] = A[ 5] ^ t0;
-			A[10] = A[10] ^ t0;
-			A[15] = A[15] ^ t0;
-			A[20] = A[20] ^ t0;
-			A[ 1] = A[ 1] ^ t1;
-			A[ 6] = A[ 6] ^ t1;
-			A[11] = A[11] ^ t1;
-			A[16] = A[16] ^ t1;
-			A[21] = A[21] ^ t1;
-			A[ 2] = A[ 2] ^ t2;
-			A[ 7] = A[ 7] ^ t2;
-			A[12] = A[12] ^ t2;
-			A[17] = A[17] ^ t2;
-			A[22] = A[22] ^ t2;
-			A[ 3] = A[ 3] ^ t3;
-			A[ 8] = A[ 8] ^ t3;
-			A[13] = A[13] ^ t3;
-			A[18] = A[18] ^ t3;
-			A[23] = A[23] ^ t3;
-			A[ 4] = A[ 4] ^ t4;
-			A[ 9] = A[ 9] ^ t4;
-			A[14] = A[14] ^ t4;
-			A[19] = A[19] ^ t4;
-			A[24] = A[24] ^ t4;
-			A[ 5] = (A[ 5] << 36) | (A[ 5] >>> (64 - 36));
-			A[10] = (A[10] << 3) | (A[10] >>> (64 - 3));
-			A[15] = (A[15] << 41) | (A[15] >>> (64 - 41));
-			A[20] = (A[20] << 18) | (A[20] >>> (64 - 18));
-			A[ 1] = (A[ 1] << 1) | (A[ 1] >>> (64 - 1));
-			A[ 6] = (A[ 6] << 44) | (A[ 6] >>> (64 - 44));
-			A[11] = (A[11] << 10) | (A[11] >>> (64 - 10));
-			A[16] = (A[16] << 45) | (A[16] >>> (64 - 45));
-			A[21] = (A[21] << 2) | (A[21] >>> (64 - 2));
-			A[ 2] = (A[ 2] << 62) | (A[ 2] >>> (64 - 62));
-			A[ 7] = (A[ 7] << 6) | (A[ 7] >>> (64 - 6));
-			A[12] = (A[12] << 43) | (A[12] >>> (64 - 43));
-			A[17] = (A[17] << 15) | (A[17] >>> (64 - 15));
-			A[22] = (A[22] << 61) | (A[22] >>> (64 - 61));
-			A[ 3] = (A[ 3] << 28) | (A[ 3] >>> (64 - 28));
-			A[ 8] = (A[ 8] << 55) | (A[ 8] >>> (64 - 55));
-			A[13] = (A[13] << 25) | (A[13] >>> (64 - 25));
-			A[18] = (A[18] << 21) | (A[18] >>> (64 - 21));
-			A[23] = (A[23] << 56) | (A[23] >>> (64 - 56));
-			A[ 4] = (A[ 4] << 27) | (A[ 4] >>> (64 - 27));
-			A[ 9] = (A[ 9] << 20) | (A[ 9] >>> (64 - 20));
-			A[14] = (A[14] << 39) | (A[14] >>> (64 - 39));
-			A[19] = (A[19] << 8) | (A[19] >>> (64 - 8));
-			A[24] = (A[24] << 14) | (A[24] >>> (64 - 14));
-			bnn = ~A[12];
-			kt = A[ 6] | A[12];
-			c0 = A[ 0] ^ kt;
-			kt = bnn | A[18];
-			c1 = A[ 6] ^ kt;
-			kt = A[18] & A[24];
-			c2 = A[12] ^ kt;
-			kt = A[24] | A[ 0];
-			c3 = A[18] ^ kt;
-			kt = A[ 0] & A[ 6];
-			c4 = A[24] ^ kt;
-			A[ 0] = c0;
-			A[ 6] = c1;
-			A[12] = c2;
-			A[18] = c3;
-			A[24] = c4;
-			bnn = ~A[22];
-			kt = A[ 9] | A[10];
-			c0 = A[ 3] ^ kt;
-			kt = A[10] & A[16];
-			c1 = A[ 9] ^ kt;
-			kt = A[16] | bnn;
-			c2 = A[10] ^ kt;
-			kt = A[22] | A[ 3];
-			c3 = A[16] ^ kt;
-			kt = A[ 3] & A[ 9];
-			c4 = A[22] ^ kt;
-			A[ 3] = c0;
-			A[ 9] = c1;
-			A[10] = c2;
-			A[16] = c3;
-			A[22] = c4;
-			bnn = ~A[19];
-			kt = A[ 7] | A[13];
-			c0 = A[ 1] ^ kt;
-			kt = A[13] & A[19];
-			c1 = A[ 7] ^ kt;
-			kt = bnn & A[20];
-			c2 = A[13] ^ kt;
-			kt = A[20] | A[ 1];
-			c3 = bnn ^ kt;
-			kt = A[ 1] & A[ 7];
-			c4 = A[20] ^ kt;
-			A[ 1] = c0;
-			A[ 7] = c1;
-			A[13] = c2;
-			A[19] = c3;
-			A[20] = c4;
-			bnn = ~A[17];
-			kt = A[ 5] & A[11];
-			c0 = A[ 4] ^ kt;
-			kt = A[11] | A[17];
-			c1 = A[ 5] ^ kt;
-			kt = bnn | A[23];
-			c2 = A[11] ^ kt;
-			kt = A[23] & A[ 4];
-			c3 = bnn ^ kt;
-			kt = A[ 4] | A[ 5];
-			c4 = A[23] ^ kt;
-			A[ 4] = c0;
-			A[ 5] = c1;
-			A[11] = c2;
-			A[17] = c3;
-			A[23] = c4;
-			bnn = ~A[ 8];
-			kt = bnn & A[14];
-			c0 = A[ 2] ^ kt;
-			kt = A[14] | A[15];
-			c1 = bnn ^ kt;
-			kt = A[15] & A[21];
-			c2 = A[14] ^ kt;
-			kt = A[21] | A[ 2];
-			c3 = A[15] ^ kt;
-			kt = A[ 2] & A[ 8];
-			c4 = A[21] ^ kt;
-			A[ 2] = c0;
-			A[ 8] = c1;
-			A[14] = c2;
-			A[15] = c3;
-			A[21] = c4;
-			A[ 0] = A[ 0] ^ RC[j + 0];
+		long b0, b1, b2, b3, b4, b5, b6, b7, b8, b9, b10, b11, b12;
+		long b13, b14, b15, b16, b17, b18, b19, b20, b21, b22, b23, b24;
+		long c0, c1, c2, c3, c4, d0, d1, d2, d3, d4, t;
+		long f0, f1, f2, f3, f4, f5, f6, f7, f8, f9, f10, f11, f12;
+		long f13, f14, f15, f16, f17, f18, f19, f20, f21, f22, f23, f24;
+		long g0, g1, g2, g3, g4, h0, h1, h2, h3, h4, u;
 
-			tt0 = A[ 6] ^ A[ 9];
-			tt1 = A[ 7] ^ A[ 5];
-			tt0 ^= A[ 8] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[24] ^ A[22];
-			tt3 = A[20] ^ A[23];
-			tt0 ^= A[21];
-			tt2 ^= tt3;
-			t0 = tt0 ^ tt2;
+		for (int round = 0; round < 24; round ++) {
+			c0 = a0 ^ a5 ^ a10 ^ a15 ^ a20;
+			g0 = e0 ^ e5 ^ e10 ^ e15 ^ e20;
+			c1 = a1 ^ a6 ^ a11 ^ a16 ^ a21;
+			g1 = e1 ^ e6 ^ e11 ^ e16 ^ e21;
+			c2 = a2 ^ a7 ^ a12 ^ a17 ^ a22;
+			g2 = e2 ^ e7 ^ e12 ^ e17 ^ e22;
+			c3 = a3 ^ a8 ^ a13 ^ a18 ^ a23;
+			g3 = e3 ^ e8 ^ e13 ^ e18 ^ e23;
+			c4 = a4 ^ a9 ^ a14 ^ a19 ^ a24;
+			g4 = e4 ^ e9 ^ e14 ^ e19 ^ e24;
+			d0 = c4 ^ ((c1 << 1) | (c1 >>> 63));
+			h0 = g4 ^ ((g1 << 1) | (g1 >>> 63));
+			d1 = c0 ^ ((c2 << 1) | (c2 >>> 63));
+			h1 = g0 ^ ((g2 << 1) | (g2 >>> 63));
+			d2 = c1 ^ ((c3 << 1) | (c3 >>> 63));
+			h2 = g1 ^ ((g3 << 1) | (g3 >>> 63));
+			d3 = c2 ^ ((c4 << 1) | (c4 >>> 63));
+			h3 = g2 ^ ((g4 << 1) | (g4 >>> 63));
+			d4 = c3 ^ ((c0 << 1) | (c0 >>> 63));
+			h4 = g3 ^ ((g0 << 1) | (g0 >>> 63));
+			b0 = a0 ^ d0;
+			f0 = e0 ^ h0;
+			t = a1 ^ d1;
+			u = e1 ^ h1;
+			b10 = (t << 1) | (t >>> 63);
+			f10 = (u << 1) | (u >>> 63);
+			t = a2 ^ d2;
+			u = e2 ^ h2;
+			b20 = (t << 62) | (t >>> 2);
+			f20 = (u << 62) | (u >>> 2);
+			t = a3 ^ d3;
+			u = e3 ^ h3;
+			b5 = (t << 28) | (t >>> 36);
+			f5 = (u << 28) | (u >>> 36);
+			t = a4 ^ d4;
+			u = e4 ^ h4;
+			b15 = (t << 27) | (t >>> 37);
+			f15 = (u << 27) | (u >>> 37);
+			t = a5 ^ d0;
+			u = e5 ^ h0;
+			b16 = (t << 36) | (t >>> 28);
+			f16 = (u << 36) | (u >>> 28);
+			t = a6 ^ d1;
+			u = e6 ^ h1;
+			b1 = (t << 44) | (t >>> 20);
+			f1 = (u << 44) | (u >>> 20);
+			t = a7 ^ d2;
+			u = e7 ^ h2;
+			b11 = (t << 6) | (t >>> 58);
+			f11 = (u << 6) | (u >>> 58);
+			t = a8 ^ d3;
+			u = e8 ^ h3;
+			b21 = (t << 55) | (t >>> 9);
+			f21 = (u << 55) | (u >>> 9);
+			t = a9 ^ d4;
+			u = e9 ^ h4;
+			b6 = (t << 20) | (t >>> 44);
+			f6 = (u << 20) | (u >>> 44);
+			t = a10 ^ d0;
+			u = e10 ^ h0;
+			b7 = (t << 3) | (t >>> 61);
+			f7 = (u << 3) | (u >>> 61);
+			t = a11 ^ d1;
+			u = e11 ^ h1;
+			b17 = (t << 10) | (t >>> 54);
+			f17 = (u << 10) | (u >>> 54);
+			t = a12 ^ d2;
+			u = e12 ^ h2;
+			b2 = (t << 43) | (t >>> 21);
+			f2 = (u << 43) | (u >>> 21);
+			t = a13 ^ d3;
+			u = e13 ^ h3;
+			b12 = (t << 25) | (t >>> 39);
+			f12 = (u << 25) | (u >>> 39);
+			t = a14 ^ d4;
+			u = e14 ^ h4;
+			b22 = (t << 39) | (t >>> 25);
+			f22 = (u << 39) | (u >>> 25);
+			t = a15 ^ d0;
+			u = e15 ^ h0;
+			b23 = (t << 41) | (t >>> 23);
+			f23 = (u << 41) | (u >>> 23);
+			t = a16 ^ d1;
+			u = e16 ^ h1;
+			b8 = (t << 45) | (t >>> 19);
+			f8 = (u << 45) | (u >>> 19);
+			t = a17 ^ d2;
+			u = e17 ^ h2;
+			b18 = (t << 15) | (t >>> 49);
+			f18 = (u << 15) | (u >>> 49);
+			t = a18 ^ d3;
+			u = e18 ^ h3;
+			b3 = (t << 21) | (t >>> 43);
+			f3 = (u << 21) | (u >>> 43);
+			t = a19 ^ d4;
+			u = e19 ^ h4;
+			b13 = (t << 8) | (t >>> 56);
+			f13 = (u << 8) | (u >>> 56);
+			t = a20 ^ d0;
+			u = e20 ^ h0;
+			b14 = (t << 18) | (t >>> 46);
+			f14 = (u << 18) | (u >>> 46);
+			t = a21 ^ d1;
+			u = e21 ^ h1;
+			b24 = (t << 2) | (t >>> 62);
+			f24 = (u << 2) | (u >>> 62);
+			t = a22 ^ d2;
+			u = e22 ^ h2;
+			b9 = (t << 61) | (t >>> 3);
+			f9 = (u << 61) | (u >>> 3);
+			t = a23 ^ d3;
+			u = e23 ^ h3;
+			b19 = (t << 56) | (t >>> 8);
+			f19 = (u << 56) | (u >>> 8);
+			t = a24 ^ d4;
+			u = e24 ^ h4;
+			b4 = (t << 14) | (t >>> 50);
+			f4 = (u << 14) | (u >>> 50);
+			a0 = b0 ^ (~b1 & b2);
+			e0 = f0 ^ (~f1 & f2);
+			a1 = b1 ^ (~b2 & b3);
+			e1 = f1 ^ (~f2 & f3);
+			a2 = b2 ^ (~b3 & b4);
+			e2 = f2 ^ (~f3 & f4);
+			a3 = b3 ^ (~b4 & b0);
+			e3 = f3 ^ (~f4 & f0);
+			a4 = b4 ^ (~b0 & b1);
+			e4 = f4 ^ (~f0 & f1);
+			a5 = b5 ^ (~b6 & b7);
+			e5 = f5 ^ (~f6 & f7);
+			a6 = b6 ^ (~b7 & b8);
+			e6 = f6 ^ (~f7 & f8);
+			a7 = b7 ^ (~b8 & b9);
+			e7 = f7 ^ (~f8 & f9);
+			a8 = b8 ^ (~b9 & b5);
+			e8 = f8 ^ (~f9 & f5);
+			a9 = b9 ^ (~b5 & b6);
+			e9 = f9 ^ (~f5 & f6);
+			a10 = b10 ^ (~b11 & b12);
+			e10 = f10 ^ (~f11 & f12);
+			a11 = b11 ^ (~b12 & b13);
+			e11 = f11 ^ (~f12 & f13);
+			a12 = b12 ^ (~b13 & b14);
+			e12 = f12 ^ (~f13 & f14);
+			a13 = b13 ^ (~b14 & b10);
+			e13 = f13 ^ (~f14 & f10);
+			a14 = b14 ^ (~b10 & b11);
+			e14 = f14 ^ (~f10 & f11);
+			a15 = b15 ^ (~b16 & b17);
+			e15 = f15 ^ (~f16 & f17);
+			a16 = b16 ^ (~b17 & b18);
+			e16 = f16 ^ (~f17 & f18);
+			a17 = b17 ^ (~b18 & b19);
+			e17 = f17 ^ (~f18 & f19);
+			a18 = b18 ^ (~b19 & b15);
+			e18 = f18 ^ (~f19 & f15);
+			a19 = b19 ^ (~b15 & b16);
+			e19 = f19 ^ (~f15 & f16);
+			a20 = b20 ^ (~b21 & b22);
+			e20 = f20 ^ (~f21 & f22);
+			a21 = b21 ^ (~b22 & b23);
+			e21 = f21 ^ (~f22 & f23);
+			a22 = b22 ^ (~b23 & b24);
+			e22 = f22 ^ (~f23 & f24);
+			a23 = b23 ^ (~b24 & b20);
+			e23 = f23 ^ (~f24 & f20);
+			a24 = b24 ^ (~b20 & b21);
+			e24 = f24 ^ (~f20 & f21);
+			a0 ^= RC[round];
+			e0 ^= RC[round];
+		}
 
-			tt0 = A[12] ^ A[10];
-			tt1 = A[13] ^ A[11];
-			tt0 ^= A[14] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 0] ^ A[ 3];
-			tt3 = A[ 1] ^ A[ 4];
-			tt0 ^= A[ 2];
-			tt2 ^= tt3;
-			t1 = tt0 ^ tt2;
+		encodeLELong(a0, out0, outOff0);
+		encodeLELong(a1, out0, outOff0 + 8);
+		encodeLELong(a2, out0, outOff0 + 16);
+		encodeLELong(a3, out0, outOff0 + 24);
+		encodeLELong(e0, out1, outOff1);
+		encodeLELong(e1, out1, outOff1 + 8);
+		encodeLELong(e2, out1, outOff1 + 16);
+		encodeLELong(e3, out1, outOff1 + 24);
+	}
 
-			tt0 = A[18] ^ A[16];
-			tt1 = A[19] ^ A[17];
-			tt0 ^= A[15] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 6] ^ A[ 9];
-			tt3 = A[ 7] ^ A[ 5];
-			tt0 ^= A[ 8];
-			tt2 ^= tt3;
-			t2 = tt0 ^ tt2;
+	/**
+	 * Read lane {@code i} of the padded single block message.
+	 */
+	private static long lane(byte[] in, int off, int len, int i)
+	{
+		int start = i << 3;
+		if (start + 8 <= len)
+			return decodeLELong(in, off + start);
+		long v = 0;
+		for (int k = 0; k < 8; k ++) {
+			int p = start + k;
+			long b;
+			if (p < len)
+				b = in[off + p] & 0xFFL;
+			else if (p == len)
+				b = 0x01L;
+			else
+				b = 0;
+			if (p == RATE - 1)
+				b |= 0x80L;
+			v |= b << (k << 3);
+		}
+		return v;
+	}
 
-			tt0 = A[24] ^ A[22];
-			tt1 = A[20] ^ A[23];
-			tt0 ^= A[21] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[12] ^ A[10];
-			tt3 = A[13] ^ A[11];
-			tt0 ^= A[14];
-			tt2 ^= tt3;
-			t3 = tt0 ^ tt2;
+	private static void singleBlock(byte[] in, int off, int len,
+		byte[] out, int outOff)
+	{
+		long a0 = lane(in, off, len, 0);
+		long a1 = lane(in, off, len, 1);
+		long a2 = lane(in, off, len, 2);
+		long a3 = lane(in, off, len, 3);
+		long a4 = lane(in, off, len, 4);
+		long a5 = lane(in, off, len, 5);
+		long a6 = lane(in, off, len, 6);
+		long a7 = lane(in, off, len, 7);
+		long a8 = lane(in, off, len, 8);
+		long a9 = lane(in, off, len, 9);
+		long a10 = lane(in, off, len, 10);
+		long a11 = lane(in, off, len, 11);
+		long a12 = lane(in, off, len, 12);
+		long a13 = lane(in, off, len, 13);
+		long a14 = lane(in, off, len, 14);
+		long a15 = lane(in, off, len, 15);
+		long a16 = lane(in, off, len, 16);
+		long a17 = 0, a18 = 0, a19 = 0, a20 = 0;
+		long a21 = 0, a22 = 0, a23 = 0, a24 = 0;
 
-			tt0 = A[ 0] ^ A[ 3];
-			tt1 = A[ 1] ^ A[ 4];
-			tt0 ^= A[ 2] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[18] ^ A[16];
-			tt3 = A[19] ^ A[17];
-			tt0 ^= A[15];
-			tt2 ^= tt3;
-			t4 = tt0 ^ tt2;
+		long b0, b1, b2, b3, b4, b5, b6, b7, b8, b9, b10, b11, b12;
+		long b13, b14, b15, b16, b17, b18, b19, b20, b21, b22, b23, b24;
+		long c0, c1, c2, c3, c4, d0, d1, d2, d3, d4, t;
 
-			A[ 0] = A[ 0] ^ t0;
-			A[ 3] = A[ 3] ^ t0;
-			A[ 1] = A[ 1] ^ t0;
-			A[ 4] = A[ 4] ^ t0;
-			A[ 2] = A[ 2] ^ t0;
-			A[ 6] = A[ 6] ^ t1;
-			A[ 9] = A[ 9] ^ t1;
-			A[ 7] = A[ 7] ^ t1;
-			A[ 5] = A[ 5] ^ t1;
-			A[ 8] = A[ 8] ^ t1;
-			A[12] = A[12] ^ t2;
-			A[10] = A[10] ^ t2;
-			A[13] = A[13] ^ t2;
-			A[11] = A[11] ^ t2;
-			A[14] = A[14] ^ t2;
-			A[18] = A[18] ^ t3;
-			A[16] = A[16] ^ t3;
-			A[19] = A[19] ^ t3;
-			A[17] = A[17] ^ t3;
-			A[15] = A[15] ^ t3;
-			A[24] = A[24] ^ t4;
-			A[22] = A[22] ^ t4;
-			A[20] = A[20] ^ t4;
-			A[23] = A[23] ^ t4;
-			A[21] = A[21] ^ t4;
-			A[ 3] = (A[ 3] << 36) | (A[ 3] >>> (64 - 36));
-			A[ 1] = (A[ 1] << 3) | (A[ 1] >>> (64 - 3));
-			A[ 4] = (A[ 4] << 41) | (A[ 4] >>> (64 - 41));
-			A[ 2] = (A[ 2] << 18) | (A[ 2] >>> (64 - 18));
-			A[ 6] = (A[ 6] << 1) | (A[ 6] >>> (64 - 1));
-			A[ 9] = (A[ 9] << 44) | (A[ 9] >>> (64 - 44));
-			A[ 7] = (A[ 7] << 10) | (A[ 7] >>> (64 - 10));
-			A[ 5] = (A[ 5] << 45) | (A[ 5] >>> (64 - 45));
-			A[ 8] = (A[ 8] << 2) | (A[ 8] >>> (64 - 2));
-			A[12] = (A[12] << 62) | (A[12] >>> (64 - 62));
-			A[10] = (A[10] << 6) | (A[10] >>> (64 - 6));
-			A[13] = (A[13] << 43) | (A[13] >>> (64 - 43));
-			A[11] = (A[11] << 15) | (A[11] >>> (64 - 15));
-			A[14] = (A[14] << 61) | (A[14] >>> (64 - 61));
-			A[18] = (A[18] << 28) | (A[18] >>> (64 - 28));
-			A[16] = (A[16] << 55) | (A[16] >>> (64 - 55));
-			A[19] = (A[19] << 25) | (A[19] >>> (64 - 25));
-			A[17] = (A[17] << 21) | (A[17] >>> (64 - 21));
-			A[15] = (A[15] << 56) | (A[15] >>> (64 - 56));
-			A[24] = (A[24] << 27) | (A[24] >>> (64 - 27));
-			A[22] = (A[22] << 20) | (A[22] >>> (64 - 20));
-			A[20] = (A[20] << 39) | (A[20] >>> (64 - 39));
-			A[23] = (A[23] << 8) | (A[23] >>> (64 - 8));
-			A[21] = (A[21] << 14) | (A[21] >>> (64 - 14));
-			bnn = ~A[13];
-			kt = A[ 9] | A[13];
-			c0 = A[ 0] ^ kt;
-			kt = bnn | A[17];
-			c1 = A[ 9] ^ kt;
-			kt = A[17] & A[21];
-			c2 = A[13] ^ kt;
-			kt = A[21] | A[ 0];
-			c3 = A[17] ^ kt;
-			kt = A[ 0] & A[ 9];
-			c4 = A[21] ^ kt;
-			A[ 0] = c0;
-			A[ 9] = c1;
-			A[13] = c2;
-			A[17] = c3;
-			A[21] = c4;
-			bnn = ~A[14];
-			kt = A[22] | A[ 1];
-			c0 = A[18] ^ kt;
-			kt = A[ 1] & A[ 5];
-			c1 = A[22] ^ kt;
-			kt = A[ 5] | bnn;
-			c2 = A[ 1] ^ kt;
-			kt = A[14] | A[18];
-			c3 = A[ 5] ^ kt;
-			kt = A[18] & A[22];
-			c4 = A[14] ^ kt;
-			A[18] = c0;
-			A[22] = c1;
-			A[ 1] = c2;
-			A[ 5] = c3;
-			A[14] = c4;
-			bnn = ~A[23];
-			kt = A[10] | A[19];
-			c0 = A[ 6] ^ kt;
-			kt = A[19] & A[23];
-			c1 = A[10] ^ kt;
-			kt = bnn & A[ 2];
-			c2 = A[19] ^ kt;
-			kt = A[ 2] | A[ 6];
-			c3 = bnn ^ kt;
-			kt = A[ 6] & A[10];
-			c4 = A[ 2] ^ kt;
-			A[ 6] = c0;
-			A[10] = c1;
-			A[19] = c2;
-			A[23] = c3;
-			A[ 2] = c4;
-			bnn = ~A[11];
-			kt = A[ 3] & A[ 7];
-			c0 = A[24] ^ kt;
-			kt = A[ 7] | A[11];
-			c1 = A[ 3] ^ kt;
-			kt = bnn | A[15];
-			c2 = A[ 7] ^ kt;
-			kt = A[15] & A[24];
-			c3 = bnn ^ kt;
-			kt = A[24] | A[ 3];
-			c4 = A[15] ^ kt;
-			A[24] = c0;
-			A[ 3] = c1;
-			A[ 7] = c2;
-			A[11] = c3;
-			A[15] = c4;
-			bnn = ~A[16];
-			kt = bnn & A[20];
-			c0 = A[12] ^ kt;
-			kt = A[20] | A[ 4];
-			c1 = bnn ^ kt;
-			kt = A[ 4] & A[ 8];
-			c2 = A[20] ^ kt;
-			kt = A[ 8] | A[12];
-			c3 = A[ 4] ^ kt;
-			kt = A[12] & A[16];
-			c4 = A[ 8] ^ kt;
-			A[12] = c0;
-			A[16] = c1;
-			A[20] = c2;
-			A[ 4] = c3;
-			A[ 8] = c4;
-			A[ 0] = A[ 0] ^ RC[j + 1];
-			t = A[ 5];
-			A[ 5] = A[18];
-			A[18] = A[11];
-			A[11] = A[10];
-			A[10] = A[ 6];
-			A[ 6] = A[22];
-			A[22] = A[20];
-			A[20] = A[12];
-			A[12] = A[19];
-			A[19] = A[15];
-			A[15] = A[24];
-			A[24] = A[ 8];
-			A[ 8] = t;
-			t = A[ 1];
-			A[ 1] = A[ 9];
-			A[ 9] = A[14];
-			A[14] = A[ 2];
-			A[ 2] = A[13];
-			A[13] = A[23];
-			A[23] = A[ 4];
-			A[ 4] = A[21];
-			A[21] = A[16];
-			A[16] = A[ 3];
-			A[ 3] = A[17];
-			A[17] = A[ 7];
-			A[ 7] = t;
+		for (int round = 0; round < 24; round ++) {
+			c0 = a0 ^ a5 ^ a10 ^ a15 ^ a20;
+			c1 = a1 ^ a6 ^ a11 ^ a16 ^ a21;
+			c2 = a2 ^ a7 ^ a12 ^ a17 ^ a22;
+			c3 = a3 ^ a8 ^ a13 ^ a18 ^ a23;
+			c4 = a4 ^ a9 ^ a14 ^ a19 ^ a24;
+			d0 = c4 ^ ((c1 << 1) | (c1 >>> 63));
+			d1 = c0 ^ ((c2 << 1) | (c2 >>> 63));
+			d2 = c1 ^ ((c3 << 1) | (c3 >>> 63));
+			d3 = c2 ^ ((c4 << 1) | (c4 >>> 63));
+			d4 = c3 ^ ((c0 << 1) | (c0 >>> 63));
+			b0 = a0 ^ d0;
+			t = a1 ^ d1;
+			b10 = (t << 1) | (t >>> 63);
+			t = a2 ^ d2;
+			b20 = (t << 62) | (t >>> 2);
+			t = a3 ^ d3;
+			b5 = (t << 28) | (t >>> 36);
+			t = a4 ^ d4;
+			b15 = (t << 27) | (t >>> 37);
+			t = a5 ^ d0;
+			b16 = (t << 36) | (t >>> 28);
+			t = a6 ^ d1;
+			b1 = (t << 44) | (t >>> 20);
+			t = a7 ^ d2;
+			b11 = (t << 6) | (t >>> 58);
+			t = a8 ^ d3;
+			b21 = (t << 55) | (t >>> 9);
+			t = a9 ^ d4;
+			b6 = (t << 20) | (t >>> 44);
+			t = a10 ^ d0;
+			b7 = (t << 3) | (t >>> 61);
+			t = a11 ^ d1;
+			b17 = (t << 10) | (t >>> 54);
+			t = a12 ^ d2;
+			b2 = (t << 43) | (t >>> 21);
+			t = a13 ^ d3;
+			b12 = (t << 25) | (t >>> 39);
+			t = a14 ^ d4;
+			b22 = (t << 39) | (t >>> 25);
+			t = a15 ^ d0;
+			b23 = (t << 41) | (t >>> 23);
+			t = a16 ^ d1;
+			b8 = (t << 45) | (t >>> 19);
+			t = a17 ^ d2;
+			b18 = (t << 15) | (t >>> 49);
+			t = a18 ^ d3;
+			b3 = (t << 21) | (t >>> 43);
+			t = a19 ^ d4;
+			b13 = (t << 8) | (t >>> 56);
+			t = a20 ^ d0;
+			b14 = (t << 18) | (t >>> 46);
+			t = a21 ^ d1;
+			b24 = (t << 2) | (t >>> 62);
+			t = a22 ^ d2;
+			b9 = (t << 61) | (t >>> 3);
+			t = a23 ^ d3;
+			b19 = (t << 56) | (t >>> 8);
+			t = a24 ^ d4;
+			b4 = (t << 14) | (t >>> 50);
+			a0 = b0 ^ (~b1 & b2);
+			a1 = b1 ^ (~b2 & b3);
+			a2 = b2 ^ (~b3 & b4);
+			a3 = b3 ^ (~b4 & b0);
+			a4 = b4 ^ (~b0 & b1);
+			a5 = b5 ^ (~b6 & b7);
+			a6 = b6 ^ (~b7 & b8);
+			a7 = b7 ^ (~b8 & b9);
+			a8 = b8 ^ (~b9 & b5);
+			a9 = b9 ^ (~b5 & b6);
+			a10 = b10 ^ (~b11 & b12);
+			a11 = b11 ^ (~b12 & b13);
+			a12 = b12 ^ (~b13 & b14);
+			a13 = b13 ^ (~b14 & b10);
+			a14 = b14 ^ (~b10 & b11);
+			a15 = b15 ^ (~b16 & b17);
+			a16 = b16 ^ (~b17 & b18);
+			a17 = b17 ^ (~b18 & b19);
+			a18 = b18 ^ (~b19 & b15);
+			a19 = b19 ^ (~b15 & b16);
+			a20 = b20 ^ (~b21 & b22);
+			a21 = b21 ^ (~b22 & b23);
+			a22 = b22 ^ (~b23 & b24);
+			a23 = b23 ^ (~b24 & b20);
+			a24 = b24 ^ (~b20 & b21);
+			a0 ^= RC[round];
 		}
+
+		encodeLELong(a0, out, outOff);
+		encodeLELong(a1, out, outOff + 8);
+		encodeLELong(a2, out, outOff + 16);
+		encodeLELong(a3, out, outOff + 24);
 	}
 }
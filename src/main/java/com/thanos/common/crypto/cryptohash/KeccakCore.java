@@ -19,6 +19,8 @@
 
 package com.thanos.common.crypto.cryptohash;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class implements the core operations for the Keccak digest
  * algorithm.
@@ -132,7 +134,28 @@ abstract class KeccakCore extends DigestEngine{
 		/* Input block */
 		for (int i = 0; i < data.length; i += 8)
 			A[i >>> 3] ^= decodeLELong(data, i);
+		permute();
+	}
 
+	/**
+	 * Absorb the lanes straight from the buffer, which is in
+	 * little-endian order.
+	 *
+	 * @see com.thanos.common.crypto.cryptohash.DigestEngine
+	 */
+	protected void processBlock(ByteBuffer data, int offset)
+	{
+		int lanes = getInternalBlockLength() >>> 3;
+		for (int i = 0; i < lanes; i ++)
+			A[i] ^= data.getLong(offset + (i << 3));
+		permute();
+	}
+
+	/**
+	 * Apply the 24 rounds of Keccak-f to the state.
+	 */
+	private void permute()
+	{
 		long t0, t1, t2, t3, t4;
 		long tt0, tt1, tt2, tt3, tt4;
 		long t, kt;
@@ -0,0 +1,231 @@
+package com.thanos.common.crypto.key.asymmetric;
+
+import com.thanos.common.utils.ThanosThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchVerifier.java description：verifies the signatures of a whole block at once.
+ * Requests (public key with its prefix, message hash, signature) are grouped by
+ * {@link SecureKeyType}, the key type being the first byte of the public key, and
+ * every group is split into chunks verified on a fixed pool of workers.
+ * <p>
+ * {@link #verify(List)} reports the result of every request, {@link #verifyAll(List)}
+ * completes with false as soon as one signature is invalid and cancels the rest.
+ * A malformed key or signature makes its request invalid, never the batch fail.
+ * Keys are taken from a {@link SecurePublicKeyCache}, block after block the same
+ * validators sign.
+ */
+public class BatchVerifier implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger("crypto");
+
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int chunkSize;
+
+    private final SecurePublicKeyCache keyCache;
+
+    public BatchVerifier() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE, SecurePublicKeyCache.getDefault());
+    }
+
+    /**
+     * Verifier taking the keys from {@link SecurePublicKeyCache#getDefault()}
+     */
+    public BatchVerifier(int threads, int chunkSize) {
+        this(threads, chunkSize, SecurePublicKeyCache.getDefault());
+    }
+
+    /**
+     * @param threads   number of workers
+     * @param chunkSize number of signatures a worker verifies per task
+     * @param keyCache  cache the public keys are taken from
+     */
+    public BatchVerifier(int threads, int chunkSize, SecurePublicKeyCache keyCache) {
+        if (threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("threads and chunk size must be positive");
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new ThanosThreadFactory("batch_verifier"));
+        this.chunkSize = chunkSize;
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * @return future of the result of every request
+     */
+    public CompletableFuture<Result> verify(List<Request> requests) {
+        boolean[] valid = new boolean[requests.size()];
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int[] chunk : plan(requests)) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int index : chunk) {
+                    valid[index] = verifyOne(requests.get(index));
+                }
+            }, executor));
+        }
+        // allOf happens after every task, so the flags are visible
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> new Result(valid));
+    }
+
+    /**
+     * Fail fast verification
+     *
+     * @return future of true if every signature is valid, completed with false
+     * by the first invalid one
+     */
+    public CompletableFuture<Boolean> verifyAll(List<Request> requests) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int[] chunk : plan(requests)) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int index : chunk) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    if (!verifyOne(requests.get(index))) {
+                        result.complete(false);
+                        return;
+                    }
+                }
+            }, executor));
+        }
+        // once invalid, the queued chunks are cancelled and skipped by the workers
+        result.thenAccept(valid -> {
+            if (!valid) {
+                tasks.forEach(task -> task.cancel(false));
+            }
+        });
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(true);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Stops the workers, pending batches are still verified
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private boolean verifyOne(Request request) {
+        try {
+            return keyCache.get(request.publicKey).verify(request.messageHash, request.signature);
+        } catch (RuntimeException e) {
+            // peers may send malformed keys at will, no stack trace
+            logger.debug("BatchVerifier invalid request: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * @return chunks of request indexes, the requests of a chunk having the same key type
+     */
+    private List<int[]> plan(List<Request> requests) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            groups.computeIfAbsent(requests.get(i).getKeyTypeCode(), code -> new ArrayList<>()).add(i);
+        }
+        List<int[]> chunks = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            for (int from = 0; from < group.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, group.size());
+                int[] chunk = new int[to - from];
+                for (int i = from; i < to; i++) {
+                    chunk[i - from] = group.get(i);
+                }
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+
+    public static class Request {
+
+        // with the prefix, as returned by SecurePublicKey.getPubKey()
+        private final byte[] publicKey;
+
+        private final byte[] messageHash;
+
+        private final byte[] signature;
+
+        public Request(byte[] publicKey, byte[] messageHash, byte[] signature) {
+            this.publicKey = publicKey;
+            this.messageHash = messageHash;
+            this.signature = signature;
+        }
+
+        public byte[] getPublicKey() {
+            return publicKey;
+        }
+
+        public byte[] getMessageHash() {
+            return messageHash;
+        }
+
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        /**
+         * @return code of the {@link SecureKeyType}, -1 for an empty key
+         */
+        public int getKeyTypeCode() {
+            return publicKey == null || publicKey.length == 0 ? -1 : publicKey[0] & 0xFF;
+        }
+    }
+
+    public static class Result {
+
+        private final boolean[] valid;
+
+        private Result(boolean[] valid) {
+            this.valid = valid;
+        }
+
+        public int size() {
+            return valid.length;
+        }
+
+        /**
+         * @return validity of the request at index, in the order of the batch
+         */
+        public boolean isValid(int index) {
+            return valid[index];
+        }
+
+        public boolean isAllValid() {
+            return getInvalidCount() == 0;
+        }
+
+        public int getInvalidCount() {
+            int count = 0;
+            for (boolean item : valid) {
+                if (!item) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
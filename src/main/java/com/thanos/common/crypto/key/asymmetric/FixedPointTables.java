@@ -0,0 +1,214 @@
+package com.thanos.common.crypto.key.asymmetric;
+
+import com.thanos.common.utils.ByteArrayWrapper;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.WNafUtil;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FixedPointTables.java description：precomputed multiples of the points ECDSA and SM2
+ * verification multiply again and again, i.e. the generator and the public keys of
+ * the validators. A verification computes {@code u1 * G + u2 * Q} with an interleaved
+ * wNAF multiplication, whose cost falls as the tables of odd multiples of G and Q widen.
+ * <p>
+ * The generator table is built once and shared, see {@link #precomputeBase(ECPoint)}.
+ * A key table is only built once the key has been used threshold times, on a copy of
+ * the point held by this cache, so it is freed when evicted. Uses and tables are kept
+ * apart: the many keys used a few times, e.g. transaction senders, only evict each
+ * other's counters, the coldest of a sample first. Tables are bounded by a memory
+ * budget, when it is spent the least recently used table makes room for the new one,
+ * so the tables of active validators stay.
+ * <p>
+ * Thread safe.
+ */
+public class FixedPointTables {
+
+    // 2^(width - 2) odd multiples and their negations per table
+    public static final int WINDOW_WIDTH = 8;
+
+    public static final int DEFAULT_THRESHOLD = 64;
+
+    public static final long DEFAULT_MEMORY_BUDGET = 8L << 20;
+
+    // 128 normalized points of a 256 bits curve, coordinates and object headers
+    public static final int TABLE_SIZE_ESTIMATE = 128 * 192;
+
+    // keys counted per table
+    private static final int COUNTERS_PER_TABLE = 4;
+
+    // counters compared to pick the coldest one to evict
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private static final FixedPointTables DEFAULT = new FixedPointTables(DEFAULT_THRESHOLD, DEFAULT_MEMORY_BUDGET);
+
+    // uses of the keys without table
+    private final ConcurrentHashMap<ByteArrayWrapper, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<ByteArrayWrapper, Table> tables = new ConcurrentHashMap<>();
+
+    private final int threshold;
+
+    private final int maxTables;
+
+    private final int maxCounters;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder builds = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param threshold    uses of a key before its table is built
+     * @param memoryBudget bytes the key tables may hold, see {@link #TABLE_SIZE_ESTIMATE}
+     */
+    public FixedPointTables(int threshold, long memoryBudget) {
+        if (threshold < 1 || memoryBudget < 0) {
+            throw new IllegalArgumentException("threshold must be positive and memory budget not negative");
+        }
+        this.threshold = threshold;
+        this.maxTables = (int) Math.min(Integer.MAX_VALUE / COUNTERS_PER_TABLE, memoryBudget / TABLE_SIZE_ESTIMATE);
+        this.maxCounters = maxTables * COUNTERS_PER_TABLE;
+    }
+
+    /**
+     * @return tables shared by ECDSA and SM2 public keys
+     */
+    public static FixedPointTables getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Builds the table of a point shared by every verification, e.g. the generator
+     * of a curve; it is kept by the point itself, outside of any budget.
+     *
+     * @return base
+     */
+    public static ECPoint precomputeBase(ECPoint base) {
+        WNafUtil.precompute(base, WINDOW_WIDTH, true);
+        return base;
+    }
+
+    /**
+     * @param key   prefixed bytes of the public key, which tell the curve
+     * @param point decoded public key
+     * @return copy of point with its table, or point itself while the key isn't used enough
+     */
+    public ECPoint get(ByteArrayWrapper key, ECPoint point) {
+        if (maxTables == 0) {
+            return point;
+        }
+        Table table = tables.get(key);
+        if (table != null) {
+            table.lastUse = System.nanoTime();
+            hits.increment();
+            return table.point;
+        }
+        AtomicInteger uses = counters.get(key);
+        if (uses == null) {
+            if (counters.size() >= maxCounters) {
+                evictColdestCounter();
+            }
+            uses = counters.computeIfAbsent(key, k -> new AtomicInteger());
+        }
+        if (uses.incrementAndGet() < threshold) {
+            return point;
+        }
+        return build(key, point);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getBuildCount() {
+        return builds.sum();
+    }
+
+    /**
+     * @return number of tables evicted to make room for others
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    public int getMaxTables() {
+        return maxTables;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FixedPointTables{tables=%s, maxTables=%s, counted=%s, hits=%s, builds=%s, evictions=%s}",
+                getTableCount(), getMaxTables(), counters.size(), getHitCount(), getBuildCount(), getEvictionCount());
+    }
+
+    private synchronized ECPoint build(ByteArrayWrapper key, ECPoint point) {
+        Table table = tables.get(key);
+        if (table == null) {
+            if (tables.size() >= maxTables) {
+                evictLeastRecentTable();
+            }
+            table = new Table(precompute(point));
+            tables.put(key, table);
+            builds.increment();
+        }
+        counters.remove(key);
+        return table.point;
+    }
+
+    private void evictLeastRecentTable() {
+        Map.Entry<ByteArrayWrapper, Table> eldest = null;
+        for (Map.Entry<ByteArrayWrapper, Table> entry : tables.entrySet()) {
+            if (eldest == null || entry.getValue().lastUse < eldest.getValue().lastUse) {
+                eldest = entry;
+            }
+        }
+        if (eldest != null && tables.remove(eldest.getKey(), eldest.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    private void evictColdestCounter() {
+        Map.Entry<ByteArrayWrapper, AtomicInteger> coldest = null;
+        Iterator<Map.Entry<ByteArrayWrapper, AtomicInteger>> iterator = counters.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && iterator.hasNext(); i++) {
+            Map.Entry<ByteArrayWrapper, AtomicInteger> entry = iterator.next();
+            if (coldest == null || entry.getValue().get() < coldest.getValue().get()) {
+                coldest = entry;
+            }
+        }
+        if (coldest != null) {
+            counters.remove(coldest.getKey(), coldest.getValue());
+        }
+    }
+
+    private static ECPoint precompute(ECPoint point) {
+        ECPoint normalized = point.normalize();
+        // BouncyCastle keeps the table in the point, a distinct instance is freed with the entry
+        ECPoint copy = normalized.getCurve().createPoint(
+                normalized.getAffineXCoord().toBigInteger(), normalized.getAffineYCoord().toBigInteger());
+        WNafUtil.precompute(copy, WINDOW_WIDTH, true);
+        return copy;
+    }
+
+    private static final class Table {
+
+        final ECPoint point;
+
+        // System.nanoTime() of the last verification, racy updates are fine
+        volatile long lastUse = System.nanoTime();
+
+        Table(ECPoint point) {
+            this.point = point;
+        }
+    }
+}
@@ -5,9 +5,11 @@ import com.thanos.common.crypto.key.asymmetric.ec.ECPublicKey;
 import com.thanos.common.crypto.key.asymmetric.ed.EDPublicKey;
 import com.thanos.common.crypto.key.asymmetric.ntru.NTRUPublicKey;
 import com.thanos.common.crypto.key.asymmetric.sm.SMPublicKey;
+import com.thanos.common.utils.ByteArrayWrapper;
 import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.HashUtil;
 import net.sf.ntru.sign.SignaturePublicKey;
+import org.bouncycastle.math.ec.ECPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,57 +40,72 @@ public abstract class SecurePublicKey {
     protected byte[] pub;
     //公钥字符串带前缀【算法类型+节点所属分片号】
     protected byte[] pubWithPrefix;
-    //区块链地址
-    protected byte[] address;
+    //区块链地址，volatile：缓存的公钥被多线程共享
+    protected volatile byte[] address;
     //节点id 64字节
-    protected byte[] nodeId;
+    protected volatile byte[] nodeId;
+    //带前缀公钥的包装，预计算表的键
+    private volatile ByteArrayWrapper fixedPointKey;
 
     public static SecurePublicKey generate(byte[] publicKeyBytes, int typeCode, short shardingNumber) {
+        SecurePublicKey securePublicKey = newKey(typeCode, Arrays.copyOfRange(publicKeyBytes, 0, publicKeyBytes.length));
+        securePublicKey.type = typeCode;
+        securePublicKey.shardingNumber = shardingNumber;
+        securePublicKey.pubWithPrefix = securePublicKey.withKeyPrefix(publicKeyBytes);
+        return securePublicKey;
+    }
+
+    /**
+     * @param publicKeyRawBytes key with its prefix, read without intermediate copies
+     * @see SecurePublicKeyCache#get(byte[]) for the keys seen again and again
+     */
+    public static SecurePublicKey generate(byte[] publicKeyRawBytes) {
+        int typeCode = (int) ByteUtil.byteArrayToLong(publicKeyRawBytes, 0, 1);
+        short shardingNumber = (short) ByteUtil.byteArrayToLong(publicKeyRawBytes, 1, 2);
+        SecurePublicKey securePublicKey = newKey(typeCode, Arrays.copyOfRange(publicKeyRawBytes, 3, publicKeyRawBytes.length));
+        securePublicKey.type = typeCode;
+        securePublicKey.shardingNumber = shardingNumber;
+        securePublicKey.pubWithPrefix = ByteUtil.copyFrom(publicKeyRawBytes);
+        return securePublicKey;
+    }
+
+    private static SecurePublicKey newKey(int typeCode, byte[] pub) {
         SecureKeyType keyType = SecureKeyType.getKeyTypeByCode(typeCode);
         if (keyType == null) {
             String errInfo = String.format("SecurePublicKey generate failed，SignAlgorithm with code[%d] not supported.", typeCode);
-            logger.error(errInfo);
+            // the type byte comes from peers, the caller decides how loud the failure is
+            logger.debug(errInfo);
             throw new RuntimeException(errInfo);
         }
-        SecurePublicKey securePublicKey;
         switch (keyType) {
             case ECDSA:
-                securePublicKey = new ECPublicKey(Arrays.copyOfRange(publicKeyBytes, 0, publicKeyBytes.length));
-                break;
+                return new ECPublicKey(pub);
             case ED25519:
-                securePublicKey = new EDPublicKey(Arrays.copyOfRange(publicKeyBytes, 0, publicKeyBytes.length));
-                break;
+                return new EDPublicKey(pub);
             case SM:
-                securePublicKey = new SMPublicKey(Arrays.copyOfRange(publicKeyBytes, 0, publicKeyBytes.length));
-                break;
+                return new SMPublicKey(pub);
             case PQC:
-                securePublicKey = new NTRUPublicKey(Arrays.copyOfRange(publicKeyBytes, 0, publicKeyBytes.length));
-                break;
+                return new NTRUPublicKey(pub);
             default:
                 String errInfo = String.format("SecureKey verify failed，unknown keyType:[%s]", keyType);
                 logger.error(errInfo);
                 throw new RuntimeException(errInfo);
         }
-        securePublicKey.type = typeCode;
-        securePublicKey.shardingNumber = shardingNumber;
-        securePublicKey.pubWithPrefix = securePublicKey.withKeyPrefix(publicKeyBytes);
-        return securePublicKey;
-    }
-
-    public static SecurePublicKey generate(byte[] publicKeyRawBytes) {
-        int typeCode = ByteUtil.byteArrayToInt(Arrays.copyOfRange(publicKeyRawBytes, 0, 1));
-        short shardingNumber = ByteUtil.byteArrayToShort(Arrays.copyOfRange(publicKeyRawBytes, 1, 3));
-        return generate(Arrays.copyOfRange(publicKeyRawBytes, 3, publicKeyRawBytes.length), typeCode, shardingNumber);
     }
 
+    /**
+     * @return a copy, keys of a {@link SecurePublicKeyCache} are shared by every caller
+     */
     public abstract byte[] getNodeId();
 
-
+    /**
+     * @return a copy, same as {@link #getNodeId()}
+     */
     public byte[] getAddress() {
         if (address == null) {
             address = computeAddress(this.pub);
         }
-        return address;
+        return ByteUtil.copyFrom(address);
     }
 
     public abstract byte[] computeAddress(byte[] pubBytes);
@@ -109,6 +126,32 @@ public abstract class SecurePublicKey {
 
     public abstract boolean verify(byte[] data, byte[] sig);
 
+    /**
+     * Checks a recoverable signature by recovering its signer, see ECKey#signRecoverable
+     *
+     * @return false for the key types without recovery
+     */
+    public boolean verifyRecoverable(byte[] messageHash, byte[] signature) {
+        return false;
+    }
+
+    /**
+     * @param point decoded key of an ECDSA or SM2 public key
+     * @return point with its precomputed table once the key is used often enough
+     * @see FixedPointTables
+     */
+    protected ECPoint withFixedPointTable(ECPoint point) {
+        if (pubWithPrefix == null) {
+            return point;
+        }
+        ByteArrayWrapper key = fixedPointKey;
+        if (key == null) {
+            key = new ByteArrayWrapper(pubWithPrefix);
+            fixedPointKey = key;
+        }
+        return FixedPointTables.getDefault().get(key, point);
+    }
+
 
     /**
      * 给密钥添加前缀：第1字节：密钥类型，第2~3字节：所属分片号
@@ -0,0 +1,149 @@
+package com.thanos.common.crypto.key.asymmetric;
+
+import com.thanos.common.utils.ByteArrayWrapper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SecurePublicKeyCache.java description：bounded cache of the public keys built by
+ * {@link SecurePublicKey#generate(byte[])}, keyed by the key bytes with their prefix.
+ * Validators and peers sign with the same few hundred keys, so a hit skips the point
+ * decompression and validation and the JCA key construction of every verification.
+ * <p>
+ * Cached keys are shared between threads: they are never modified once built, their
+ * lazily computed address and node id being idempotent, their getters return
+ * copies. When the cache is full the least recently used key of a sample is
+ * evicted per insertion, reads never lock.
+ * <p>
+ * Thread safe.
+ */
+public class SecurePublicKeyCache {
+
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    // keys compared to pick the least recently used one to evict
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private static final SecurePublicKeyCache DEFAULT = new SecurePublicKeyCache(DEFAULT_MAX_SIZE);
+
+    private final ConcurrentHashMap<ByteArrayWrapper, Entry> keys;
+
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public SecurePublicKeyCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("max size must be positive");
+        }
+        this.keys = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return cache shared by the callers not needing one of their own
+     */
+    public static SecurePublicKeyCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param publicKeyRawBytes key with its prefix, as returned by {@link SecurePublicKey#getPubKey()}
+     * @return shared key, built on a miss
+     */
+    public SecurePublicKey get(byte[] publicKeyRawBytes) {
+        Entry entry = keys.get(new ByteArrayWrapper(publicKeyRawBytes));
+        if (entry != null) {
+            entry.lastUse = System.nanoTime();
+            hits.increment();
+            return entry.key;
+        }
+        misses.increment();
+        // built outside of the map lock, two threads missing the same key build it twice
+        SecurePublicKey key = SecurePublicKey.generate(publicKeyRawBytes);
+        if (keys.size() >= maxSize) {
+            evictOne();
+        }
+        // the key bytes are copied, callers may reuse their buffer
+        Entry previous = keys.putIfAbsent(new ByteArrayWrapper(key.getPubKey()), new Entry(key));
+        return previous == null ? key : previous.key;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits over lookups, 0 before the first one
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Empties the cache and resets the statistics
+     */
+    public void clear() {
+        keys.clear();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SecurePublicKeyCache{size=%s, maxSize=%s, hits=%s, misses=%s, evictions=%s, hitRate=%.3f}",
+                size(), getMaxSize(), getHitCount(), getMissCount(), getEvictionCount(), getHitRate());
+    }
+
+    private void evictOne() {
+        Map.Entry<ByteArrayWrapper, Entry> eldest = null;
+        Iterator<Map.Entry<ByteArrayWrapper, Entry>> iterator = keys.entrySet().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && iterator.hasNext(); i++) {
+            Map.Entry<ByteArrayWrapper, Entry> entry = iterator.next();
+            if (eldest == null || entry.getValue().lastUse < eldest.getValue().lastUse) {
+                eldest = entry;
+            }
+        }
+        if (eldest != null && keys.remove(eldest.getKey(), eldest.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+
+        final SecurePublicKey key;
+
+        // System.nanoTime() of the last lookup, racy updates are fine
+        volatile long lastUse = System.nanoTime();
+
+        Entry(SecurePublicKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.thanos.common.crypto.key.asymmetric;
+
+import com.thanos.common.crypto.CastleProvider;
+import net.sf.ntru.sign.NtruSign;
+import net.sf.ntru.sign.SignatureParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SignatureContext.java description：per thread signers and verifiers of every key type,
+ * built once per thread instead of once per signature. JCA signatures are created
+ * from the BouncyCastle provider instance, so no provider is looked up by name on
+ * the hot path; ECDSA signing keeps its HMac k calculator and SHA-256 digest, and
+ * NTRU its parameter set.
+ * <p>
+ * A context is initialized with the key before every use, so it never carries the
+ * state of a previous signature. Contexts must not escape the calling thread.
+ */
+public final class SignatureContext {
+
+    private static final ThreadLocal<ECDSASigner> ECDSA_SIGNER =
+            ThreadLocal.withInitial(() -> new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest())));
+
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+
+    private static final ThreadLocal<NtruSign> NTRU_SIGN =
+            ThreadLocal.withInitial(() -> new NtruSign(SignatureParameters.APR2011_439_PROD));
+
+    private SignatureContext() {
+    }
+
+    /**
+     * @return deterministic (RFC 6979) ECDSA signer of the current thread
+     */
+    public static ECDSASigner ecdsaSigner() {
+        return ECDSA_SIGNER.get();
+    }
+
+    /**
+     * @param algorithm JCA signature algorithm, e.g. SM2 with SM3 or Ed25519
+     * @return BouncyCastle signature of the current thread
+     */
+    public static Signature signature(String algorithm) {
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if (signature == null) {
+            try {
+                signature = Signature.getInstance(algorithm, CastleProvider.getBouncyInstance());
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError("Assumed algorithm " + algorithm + " provided by BouncyCastle", e);
+            }
+            signatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * @return NTRU signer of the current thread, with the APR2011_439_PROD parameters
+     */
+    public static NtruSign ntruSign() {
+        return NTRU_SIGN.get();
+    }
+}
@@ -38,18 +38,18 @@ import com.thanos.common.crypto.jce.ECKeyPairGenerator;
 import com.thanos.common.crypto.key.asymmetric.SecureKey;
 import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
 import com.thanos.common.utils.HashUtil;
 import com.thanos.common.utils.StdDSAEncoder;
 import org.bouncycastle.asn1.sec.SECNamedCurves;
 import org.bouncycastle.asn1.x9.X9ECParameters;
-import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.params.*;
 import org.bouncycastle.crypto.signers.ECDSASigner;
-import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
 import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPrivateKey;
 import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.jce.spec.ECPrivateKeySpec;
+import org.bouncycastle.math.ec.ECPoint;
 import org.bouncycastle.util.encoders.Hex;
 
 import java.io.Serializable;
@@ -199,14 +199,51 @@ public class ECKey extends SecureKey implements Serializable {
 
 
     public byte[] sign(byte[] messageHash) {
+        BigInteger[] components = signComponents(messageHash);
+        try {
+            return StdDSAEncoder.encode(components[0], components[1]);
+        } catch (Exception e) {
+            logger.error("ECKey sign  failed, msgHash:{}.", Hex.toHexString(messageHash), e);
+            throw new AssertionError("ECKey sign failed.", e);
+        }
+    }
+
+    /**
+     * Signs so that the public key can be recovered from the signature, see
+     * {@link ECPublicKey#recoverPubBytes(byte[], byte[])}: transactions signed this way
+     * don't need to carry the public key of their sender.
+     *
+     * @return r (32 bytes) || s (32 bytes) || v, v being the recovery id from 0 to 3
+     */
+    public byte[] signRecoverable(byte[] messageHash) {
+        BigInteger[] components = signComponents(messageHash);
+        ECPoint pubPoint = ((ECPublicKey) this.securePublicKey).publicKeyParameters.getQ();
+        // Now we have to work backwards to figure out the recId needed to recover the signature.
+        for (int recId = 0; recId < 4; recId++) {
+            ECPoint recovered = ECPublicKey.recoverPoint(recId, components[0], components[1], messageHash);
+            if (recovered != null && recovered.equals(pubPoint)) {
+                byte[] signature = new byte[ECPublicKey.RECOVERABLE_SIGNATURE_LENGTH];
+                System.arraycopy(bigIntegerToBytes(components[0], 32), 0, signature, 0, 32);
+                System.arraycopy(bigIntegerToBytes(components[1], 32), 0, signature, 32, 32);
+                signature[64] = (byte) recId;
+                return signature;
+            }
+        }
+        throw new RuntimeException("Could not construct a recoverable key. This should never happen.");
+    }
+
+    /**
+     * @return r and the canonical s
+     */
+    private BigInteger[] signComponents(byte[] messageHash) {
         // No decryption of private key required.
         if (privKey == null)
             throw new MissingPrivateKeyException();
         try {
-            ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+            ECDSASigner signer = SignatureContext.ecdsaSigner();
             signer.init(true, privKeyParams);
             BigInteger[] components = signer.generateSignature(messageHash);
-            return StdDSAEncoder.encode(components[0], toCanonicalised(components[1]));
+            return new BigInteger[]{components[0], toCanonicalised(components[1])};
         } catch (Exception e) {
             logger.error("ECKey sign  failed, msgHash:{}.", Hex.toHexString(messageHash), e);
             throw new AssertionError("ECKey sign failed.", e);
@@ -1,16 +1,20 @@
 package com.thanos.common.crypto.key.asymmetric.ec;
 
 import com.thanos.common.crypto.CastleProvider;
+import com.thanos.common.crypto.key.asymmetric.FixedPointTables;
+import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SecurePublicKeyCache;
+import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.HashUtil;
 import com.thanos.common.utils.StdDSAEncoder;
 import org.bouncycastle.asn1.sec.SECNamedCurves;
 import org.bouncycastle.asn1.x9.X9ECParameters;
 import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
-import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.jce.spec.ECPublicKeySpec;
+import org.bouncycastle.math.ec.ECAlgorithms;
 import org.bouncycastle.math.ec.ECPoint;
 
 import java.math.BigInteger;
@@ -36,20 +40,29 @@ public class ECPublicKey extends SecurePublicKey {
 
     public static final ECParameterSpec CURVE_SPEC;
 
+    public static final BigInteger HALF_CURVE_ORDER;
+
     public final ECPublicKeyParameters publicKeyParameters;
 
     public static final String ALGORITHM = "EC";
 
+    // r (32 bytes) || s (32 bytes) || v
+    public static final int RECOVERABLE_SIGNATURE_LENGTH = 65;
+
     static {
         X9ECParameters params = SECNamedCurves.getByName("secp256k1");
         CURVE = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());
         CURVE_SPEC = new ECParameterSpec(params.getCurve(), params.getG(), params.getN(), params.getH());
+        HALF_CURVE_ORDER = params.getN().shiftRight(1);
+        FixedPointTables.precomputeBase(CURVE.getG());
     }
 
     public ECPublicKey(byte[] pubBytes) {
         this.pub = pubBytes;
-        publicKeyParameters = new ECPublicKeyParameters(CURVE.getCurve().decodePoint(pub), CURVE);
-        this.publicKey = publicKeyFromBytes(pub);
+        // decoded and validated once for both the signer parameters and the JCA key
+        ECPoint point = CURVE.getCurve().decodePoint(pub);
+        publicKeyParameters = new ECPublicKeyParameters(point, CURVE);
+        this.publicKey = publicKeyFromPoint(point);
     }
 
     @Override
@@ -57,37 +70,156 @@ public class ECPublicKey extends SecurePublicKey {
         if (nodeId == null) {
             nodeId = Arrays.copyOfRange(pub, 1, pub.length);
         }
-        return nodeId;
+        return ByteUtil.copyFrom(nodeId);
     }
 
 
     @Override
     public boolean verify(byte[] data, byte[] sig) {
         try {
-            ECDSASigner signer = new ECDSASigner();
-            signer.init(false, publicKeyParameters);
             BigInteger[] components = StdDSAEncoder.decode(sig);
-            return signer.verifySignature(data, components[0], components[1]);
+            return verify(data, components[0], components[1]);
         } catch (Exception e) {
-            logger.warn("ECPublicKey verify error!", e);
+            // malformed signatures come from peers at will, no stack trace
+            logger.debug("ECPublicKey verify error: {}", e.toString());
             return false;
         }
     }
 
+    /**
+     * ECDSA verification as ECDSASigner does it, with the precomputed tables of G and of this key
+     */
+    private boolean verify(byte[] messageHash, BigInteger r, BigInteger s) {
+        BigInteger n = CURVE.getN();
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(n) >= 0) {
+            return false;
+        }
+        BigInteger c = s.modInverse(n);
+        BigInteger u1 = calculateE(n, messageHash).multiply(c).mod(n);
+        BigInteger u2 = r.multiply(c).mod(n);
+        ECPoint point = ECAlgorithms.sumOfTwoMultiplies(
+                CURVE.getG(), u1, withFixedPointTable(publicKeyParameters.getQ()), u2).normalize();
+        return !point.isInfinity() && point.getAffineXCoord().toBigInteger().mod(n).equals(r);
+    }
 
-    private static PublicKey publicKeyFromBytes(byte[] pubKeyBytes) {
-        if (pubKeyBytes == null) {
+    @Override
+    public boolean verifyRecoverable(byte[] messageHash, byte[] signature) {
+        try {
+            ECPoint recovered = recoverPoint(messageHash, signature);
+            return recovered != null && recovered.equals(publicKeyParameters.getQ());
+        } catch (Exception e) {
+            logger.debug("ECPublicKey verifyRecoverable error: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * @param signature r || s || v, as returned by {@link ECKey#signRecoverable(byte[])}
+     * @return 65 bytes uncompressed public key which signed messageHash, null if the signature is invalid
+     */
+    public static byte[] recoverPubBytes(byte[] messageHash, byte[] signature) {
+        ECPoint recovered = recoverPoint(messageHash, signature);
+        return recovered == null ? null : recovered.getEncoded(false);
+    }
+
+    /**
+     * @return address of the signer, null if the signature is invalid
+     */
+    public static byte[] recoverAddress(byte[] messageHash, byte[] signature) {
+        byte[] pubBytes = recoverPubBytes(messageHash, signature);
+        return pubBytes == null ? null : HashUtil.sha3omit12(Arrays.copyOfRange(pubBytes, 1, pubBytes.length));
+    }
+
+    /**
+     * The key is taken from {@link SecurePublicKeyCache#getDefault()}, a signer seen
+     * before costs no point decoding
+     *
+     * @return public key of the signer, null if the signature is invalid
+     */
+    public static SecurePublicKey recover(byte[] messageHash, byte[] signature, short shardingNumber) {
+        ECPoint recovered = recoverPoint(messageHash, signature);
+        if (recovered == null) {
             return null;
-        } else {
-            try {
-                ECPoint w = CURVE.getCurve().decodePoint(pubKeyBytes);
-                return KeyFactory.getInstance(ALGORITHM, CastleProvider.getBouncyInstance())
-                        .generatePublic(new ECPublicKeySpec(w, CURVE_SPEC));
-            } catch (InvalidKeySpecException ex) {
-                throw new AssertionError("Assumed correct key spec statically", ex);
-            } catch (NoSuchAlgorithmException ex) {
-                throw new AssertionError("Assumed correct algorithm of ed pubKey", ex);
-            }
+        }
+        byte[] pubBytes = recovered.getEncoded(false);
+        // prefix of SecurePublicKey.getPubKey(): key type and big endian sharding number
+        byte[] pubWithPrefix = new byte[3 + pubBytes.length];
+        pubWithPrefix[0] = (byte) SecureKeyType.ECDSA.getCode();
+        pubWithPrefix[1] = (byte) (shardingNumber >> 8);
+        pubWithPrefix[2] = (byte) shardingNumber;
+        System.arraycopy(pubBytes, 0, pubWithPrefix, 3, pubBytes.length);
+        return SecurePublicKeyCache.getDefault().get(pubWithPrefix);
+    }
+
+    private static ECPoint recoverPoint(byte[] messageHash, byte[] signature) {
+        if (signature == null || signature.length != RECOVERABLE_SIGNATURE_LENGTH) {
+            return null;
+        }
+        // a single encoding of v, from 0 to 3, the ethereum style 27 to 30 is rejected
+        int recId = signature[64] & 0xFF;
+        if (recId > 3) {
+            return null;
+        }
+        BigInteger r = new BigInteger(1, Arrays.copyOfRange(signature, 0, 32));
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, 32, 64));
+        return recoverPoint(recId, r, s, messageHash);
+    }
+
+    /**
+     * Recovers the public key of a signature according to SEC1v2 section 4.1.6,
+     * recId telling the x coordinate of R, r or r + n, and the parity of its y.
+     *
+     * @return normalized public key, null if there is none for recId or if s isn't
+     * canonical, (r, n - s) being the same signature with the other recId
+     */
+    static ECPoint recoverPoint(int recId, BigInteger r, BigInteger s, byte[] messageHash) {
+        BigInteger n = CURVE.getN();
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(HALF_CURVE_ORDER) > 0) {
+            return null;
+        }
+        BigInteger x = (recId & 2) == 0 ? r : r.add(n);
+        if (x.compareTo(CURVE.getCurve().getField().getCharacteristic()) >= 0) {
+            // Cannot have point co-ordinates larger than this as everything takes place modulo Q.
+            return null;
+        }
+        byte[] compressed = new byte[33];
+        compressed[0] = (byte) ((recId & 1) == 1 ? 0x03 : 0x02);
+        System.arraycopy(ByteUtil.bigIntegerToBytes(x, 32), 0, compressed, 1, 32);
+        ECPoint point;
+        try {
+            point = CURVE.getCurve().decodePoint(compressed);
+        } catch (IllegalArgumentException e) {
+            // x is not on the curve
+            return null;
+        }
+        // the cofactor of secp256k1 is 1, every point has order n and nR is not computed
+        //   Q = mi(r) * (sR - eG)
+        BigInteger rInv = r.modInverse(n);
+        BigInteger srInv = rInv.multiply(s).mod(n);
+        BigInteger eInvrInv = rInv.multiply(n.subtract(calculateE(n, messageHash))).mod(n);
+        ECPoint q = ECAlgorithms.sumOfTwoMultiplies(CURVE.getG(), eInvrInv, point, srInv).normalize();
+        return q.isInfinity() ? null : q;
+    }
+
+    private static BigInteger calculateE(BigInteger n, byte[] message) {
+        int log2n = n.bitLength();
+        int messageBitLength = message.length * 8;
+        BigInteger e = new BigInteger(1, message);
+        if (log2n < messageBitLength) {
+            e = e.shiftRight(messageBitLength - log2n);
+        }
+        return e;
+    }
+
+
+    private static PublicKey publicKeyFromPoint(ECPoint w) {
+        try {
+            return KeyFactory.getInstance(ALGORITHM, CastleProvider.getBouncyInstance())
+                    .generatePublic(new ECPublicKeySpec(w, CURVE_SPEC));
+        } catch (InvalidKeySpecException ex) {
+            throw new AssertionError("Assumed correct key spec statically", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError("Assumed correct algorithm of ed pubKey", ex);
         }
     }
 
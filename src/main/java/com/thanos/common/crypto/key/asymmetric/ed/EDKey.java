@@ -5,6 +5,7 @@ import com.thanos.common.crypto.jce.EDKeyPairGenerator;
 import com.thanos.common.crypto.key.asymmetric.SecureKey;
 import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
 import org.bouncycastle.jcajce.interfaces.EdDSAPrivateKey;
 import org.bouncycastle.jcajce.provider.asymmetric.edec.BCEdDSAPublicKey;
 import org.bouncycastle.util.encoders.Hex;
@@ -117,7 +118,7 @@ public class EDKey extends SecureKey {
         if (privKey == null)
             throw new MissingPrivateKeyException();
         try {
-            Signature signature = Signature.getInstance(ED25519, "BC");
+            Signature signature = SignatureContext.signature(ED25519);
             signature.initSign(privKey);
             signature.update(messageHash);
             return signature.sign();
@@ -2,6 +2,7 @@ package com.thanos.common.crypto.key.asymmetric.ed;
 
 import com.thanos.common.crypto.CastleProvider;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
 import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.HashUtil;
 import org.bouncycastle.util.encoders.Hex;
@@ -40,19 +41,19 @@ public class EDPublicKey extends SecurePublicKey {
             byte[] pubBytes = pubBytesWithoutFormat(this.pub);
             nodeId = ByteUtil.merge(pubBytes, pubBytes);
         }
-        return nodeId;
+        return ByteUtil.copyFrom(nodeId);
     }
 
 
     @Override
     public boolean verify(byte[] data, byte[] sig) {
         try {
-            Signature signature = Signature.getInstance(ED25519, "BC");
+            Signature signature = SignatureContext.signature(ED25519);
             signature.initVerify(publicKey);
             signature.update(data);
             return signature.verify(sig);
         } catch (Exception e) {
-            logger.warn("EDPublicKey verify error!", e);
+            logger.debug("EDPublicKey verify error: {}", e.toString());
             return false;
         }
     }
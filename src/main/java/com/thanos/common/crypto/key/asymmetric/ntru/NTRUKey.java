@@ -3,6 +3,7 @@ package com.thanos.common.crypto.key.asymmetric.ntru;
 import com.thanos.common.crypto.key.asymmetric.SecureKey;
 import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
 import net.sf.ntru.sign.*;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
@@ -69,7 +70,7 @@ public class NTRUKey extends SecureKey {
     public byte[] sign(byte[] messageHash) {
         if (keyPair == null)
             throw new MissingPrivateKeyException();
-        NtruSign sign = new NtruSign(SignatureParameters.APR2011_439_PROD);
+        NtruSign sign = SignatureContext.ntruSign();
         sign.initSign(keyPair);
         return sign.sign(messageHash);
     }
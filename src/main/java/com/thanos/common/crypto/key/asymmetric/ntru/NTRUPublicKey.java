@@ -1,9 +1,10 @@
 package com.thanos.common.crypto.key.asymmetric.ntru;
 
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
+import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.HashUtil;
 import net.sf.ntru.sign.NtruSign;
-import net.sf.ntru.sign.SignatureParameters;
 import net.sf.ntru.sign.SignaturePublicKey;
 
 import java.util.Arrays;
@@ -26,12 +27,12 @@ public class NTRUPublicKey extends SecurePublicKey {
         if (nodeId == null) {
             nodeId = HashUtil.sha512(this.pub);
         }
-        return nodeId;
+        return ByteUtil.copyFrom(nodeId);
     }
 
     @Override
     public boolean verify(byte[] data, byte[] sig) {
-        NtruSign sign = new NtruSign(SignatureParameters.APR2011_439_PROD);
+        NtruSign sign = SignatureContext.ntruSign();
         sign.initVerify(signaturePublicKey);
         return sign.verify(data, sig, signaturePublicKey);
     }
@@ -6,6 +6,7 @@ import com.thanos.common.crypto.jce.SMKeyPairGenerator;
 import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
 import com.thanos.common.crypto.key.asymmetric.SecureKey;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.crypto.key.asymmetric.SignatureContext;
 import com.thanos.common.utils.HashUtil;
 import org.bouncycastle.asn1.gm.GMNamedCurves;
 import org.bouncycastle.asn1.gm.GMObjectIdentifiers;
@@ -138,7 +139,7 @@ public class SMKey extends SecureKey {
         if (privKey == null)
             throw new MissingPrivateKeyException();
         try {
-            Signature signature = Signature.getInstance(SM2_WITH_SM3, "BC");
+            Signature signature = SignatureContext.signature(SM2_WITH_SM3);
             signature.initSign(privKey);
             signature.update(messageHash);
             return signature.sign();
@@ -1,20 +1,29 @@
 package com.thanos.common.crypto.key.asymmetric.sm;
 
 import com.thanos.common.crypto.CastleProvider;
+import com.thanos.common.crypto.CryptoHash;
+import com.thanos.common.crypto.CryptoHashRegistry;
+import com.thanos.common.crypto.CryptoHashType;
+import com.thanos.common.crypto.key.asymmetric.FixedPointTables;
 import com.thanos.common.crypto.key.asymmetric.SecurePublicKey;
+import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.HashUtil;
+import com.thanos.common.utils.StdDSAEncoder;
 import org.bouncycastle.asn1.gm.GMNamedCurves;
 import org.bouncycastle.asn1.gm.GMObjectIdentifiers;
 import org.bouncycastle.asn1.x9.X9ECParameters;
 import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.jce.spec.ECPublicKeySpec;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECFieldElement;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.encoders.Hex;
 
+import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
 
@@ -26,9 +35,18 @@ import java.util.Arrays;
 
 public class SMPublicKey extends SecurePublicKey {
 
+    // SM2 default user id "1234567812345678", the one of the JCA signatures
+    private static final byte[] DEFAULT_USER_ID = Hex.decode("31323334353637383132333435363738");
+
+    private final ECPoint publicKeyPoint;
+
+    // SM3(ENTL || ID || a || b || xG || yG || xA || yA), computed on first verification
+    private volatile byte[] z;
+
     public SMPublicKey(byte[] pubBytes) {
         this.pub = pubBytes;
-        this.publicKey = publicKeyFromBytes(pub);
+        this.publicKeyPoint = CURVE.getCurve().decodePoint(pub);
+        this.publicKey = publicKeyFromPoint(publicKeyPoint);
     }
 
     /**
@@ -46,6 +64,7 @@ public class SMPublicKey extends SecurePublicKey {
         X9ECParameters params = GMNamedCurves.getByName("sm2p256v1");
         CURVE = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());
         CURVE_SPEC = new ECParameterSpec(params.getCurve(), params.getG(), params.getN(), params.getH());
+        FixedPointTables.precomputeBase(CURVE.getG());
     }
 
     @Override
@@ -53,37 +72,74 @@ public class SMPublicKey extends SecurePublicKey {
         if (nodeId == null) {
             nodeId = Arrays.copyOfRange(pub, 1, pub.length);
         }
-        return nodeId;
+        return ByteUtil.copyFrom(nodeId);
     }
 
 
     @Override
     public boolean verify(byte[] data, byte[] sig) {
         try {
-            Signature signature = Signature.getInstance(SM2_WITH_SM3, "BC");
-            signature.initVerify(publicKey);
-            signature.update(data);
-            return signature.verify(sig);
+            // the JCA SM2 verifier only accepts canonical DER, signatures must not be malleable
+            BigInteger[] components = StdDSAEncoder.decodeStrict(sig);
+            return verify(data, components[0], components[1]);
         } catch (Exception e) {
-            logger.warn("SMPublicKey verify error!", e);
+            logger.debug("SMPublicKey verify error: {}", e.toString());
             return false;
         }
     }
 
+    /**
+     * SM2 verification as SM2Signer does it, with Z computed once per key and the
+     * precomputed tables of G and of this key
+     */
+    private boolean verify(byte[] data, BigInteger r, BigInteger s) {
+        BigInteger n = CURVE.getN();
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(n) >= 0) {
+            return false;
+        }
+        BigInteger t = r.add(s).mod(n);
+        if (t.signum() == 0) {
+            return false;
+        }
+        byte[] zValue = getZ();
+        CryptoHash sm3 = CryptoHashRegistry.local(CryptoHashType.SM3);
+        sm3.update(zValue);
+        sm3.update(data);
+        BigInteger e = new BigInteger(1, sm3.digest());
+        ECPoint point = ECAlgorithms.sumOfTwoMultiplies(
+                CURVE.getG(), s, withFixedPointTable(publicKeyPoint), t).normalize();
+        return !point.isInfinity() && e.add(point.getAffineXCoord().toBigInteger()).mod(n).equals(r);
+    }
 
-    private static PublicKey publicKeyFromBytes(byte[] pubKeyBytes) {
-        if (pubKeyBytes == null) {
-            return null;
-        } else {
-            try {
-                ECPoint w = CURVE.getCurve().decodePoint(pubKeyBytes);
-                return KeyFactory.getInstance(ALGORITHM, CastleProvider.getBouncyInstance())
-                        .generatePublic(new ECPublicKeySpec(w, CURVE_SPEC));
-            } catch (InvalidKeySpecException ex) {
-                throw new AssertionError("Assumed correct key spec statically", ex);
-            } catch (NoSuchAlgorithmException ex) {
-                throw new AssertionError("Assumed correct algorithm of ed pubKey", ex);
+    private byte[] getZ() {
+        byte[] value = z;
+        if (value == null) {
+            CryptoHash sm3 = CryptoHashRegistry.local(CryptoHashType.SM3);
+            int entl = DEFAULT_USER_ID.length * 8;
+            sm3.update((byte) (entl >> 8));
+            sm3.update((byte) entl);
+            sm3.update(DEFAULT_USER_ID);
+            ECPoint q = publicKeyPoint.normalize();
+            for (ECFieldElement element : new ECFieldElement[]{CURVE.getCurve().getA(), CURVE.getCurve().getB(),
+                    CURVE.getG().getAffineXCoord(), CURVE.getG().getAffineYCoord(),
+                    q.getAffineXCoord(), q.getAffineYCoord()}) {
+                sm3.update(element.getEncoded());
             }
+            value = sm3.digest();
+            z = value;
+        }
+        return value;
+    }
+
+
+    private static PublicKey publicKeyFromPoint(ECPoint w) {
+        try {
+            return KeyFactory.getInstance(ALGORITHM, CastleProvider.getBouncyInstance())
+                    .generatePublic(new ECPublicKeySpec(w, CURVE_SPEC));
+        } catch (InvalidKeySpecException ex) {
+            throw new AssertionError("Assumed correct key spec statically", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError("Assumed correct algorithm of ed pubKey", ex);
         }
     }
 
@@ -31,6 +31,8 @@ public class ByteArrayWrapper implements Comparable<ByteArrayWrapper>, Serializa
 
     private final byte[] data;
     private int hashCode = 0;
+    // keccak-256 of data, computed on first use
+    private transient volatile byte[] sha3;
 
     public ByteArrayWrapper(byte[] data) {
         if (data == null)
@@ -70,6 +72,21 @@ public class ByteArrayWrapper implements Comparable<ByteArrayWrapper>, Serializa
         return data;
     }
 
+    /**
+     * Keccak-256 of the data, memoized like {@link Value#hash()}: a wrapper seen
+     * again is not rehashed.
+     *
+     * @return a copy, callers may modify it
+     */
+    public byte[] getSha3() {
+        byte[] hash = sha3;
+        if (hash == null) {
+            hash = HashUtil.sha3(data);
+            sha3 = hash;
+        }
+        return ByteUtil.copyFrom(hash);
+    }
+
     @Override
     public String toString() {
         return toHexString(data);
@@ -238,14 +238,14 @@ public class ByteUtil {
     public static int byteArrayToInt(byte[] b) {
         if (b == null || b.length == 0)
             return 0;
-        return new BigInteger(1, b).intValue();
+        return (int) byteArrayToLong(b, 0, b.length);
     }
 
 
     public static short byteArrayToShort(byte[] b) {
         if (b == null || b.length == 0)
             return 0;
-        return new BigInteger(1, b).shortValue();
+        return (short) byteArrayToLong(b, 0, b.length);
     }
 
     /**
@@ -260,7 +260,20 @@ public class ByteUtil {
     public static long byteArrayToLong(byte[] b) {
         if (b == null || b.length == 0)
             return 0;
-        return new BigInteger(1, b).longValue();
+        return byteArrayToLong(b, 0, b.length);
+    }
+
+    /**
+     * Same as {@link #byteArrayToLong(byte[])} for a range of b, without allocation:
+     * the value is unsigned big endian, only the lowest 8 bytes are kept
+     * as {@link BigInteger#longValue()} does
+     */
+    public static long byteArrayToLong(byte[] b, int offset, int length) {
+        long value = 0;
+        for (int i = Math.max(offset, offset + length - Long.BYTES); i < offset + length; i++) {
+            value = (value << 8) | (b[i] & 0xFF);
+        }
+        return value;
     }
 
 
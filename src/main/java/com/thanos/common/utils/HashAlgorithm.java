@@ -0,0 +1,160 @@
+package com.thanos.common.utils;
+
+import com.thanos.common.crypto.CryptoHash;
+import com.thanos.common.crypto.CryptoHashRegistry;
+import com.thanos.common.crypto.CryptoHashType;
+import com.thanos.common.crypto.key.asymmetric.SecureKeyType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HashAlgorithm.java description：hash function picked once from the configuration
+ * or the key type, so callers hash with {@code algorithm.hash(data)} instead of
+ * branching on the deployment: GM chains use SM3 end to end instead of hashing
+ * with keccak-256 first. Every algorithm runs on the per-thread engines of
+ * {@link HashUtil} and produces 32 bytes. Codes and descriptions are the ones of
+ * {@link CryptoHashType}, there is a single code space of hash algorithms.
+ */
+public enum HashAlgorithm {
+
+    KECCAK_256(CryptoHashType.KECCAK_256) {
+        @Override
+        public byte[] hash(byte[] input) {
+            return HashUtil.sha3(input);
+        }
+
+        @Override
+        public void hash(byte[] input, int offset, int length, byte[] out, int outOffset) {
+            HashUtil.sha3(input, offset, length, out, outOffset);
+        }
+
+        @Override
+        public byte[] hash(ByteBuffer input) {
+            return HashUtil.sha3(input);
+        }
+
+        @Override
+        public byte[][] hashBatch(byte[][] inputs) {
+            return HashUtil.sha3Batch(inputs);
+        }
+
+        @Override
+        public void hashBatch(byte[] data, int[] offsets, int[] lengths, byte[] out, int outOffset) {
+            HashUtil.sha3Batch(data, offsets, lengths, out, outOffset);
+        }
+    },
+
+    SHA_256(CryptoHashType.SHA_256) {
+        @Override
+        public byte[] hash(byte[] input) {
+            return HashUtil.sha256(input);
+        }
+
+        @Override
+        public void hash(byte[] input, int offset, int length, byte[] out, int outOffset) {
+            HashUtil.sha256(input, offset, length, out, outOffset);
+        }
+
+        @Override
+        public byte[] hash(ByteBuffer input) {
+            return HashUtil.sha256(input);
+        }
+    },
+
+    SM3(CryptoHashType.SM3) {
+        @Override
+        public byte[] hash(byte[] input) {
+            return HashUtil.sm3(input);
+        }
+
+        @Override
+        public void hash(byte[] input, int offset, int length, byte[] out, int outOffset) {
+            HashUtil.sm3(input, offset, length, out, outOffset);
+        }
+
+        @Override
+        public byte[] hash(ByteBuffer input) {
+            return HashUtil.sm3(input);
+        }
+    };
+
+    private final CryptoHashType hashType;
+
+    HashAlgorithm(CryptoHashType hashType) {
+        this.hashType = hashType;
+    }
+
+    public abstract byte[] hash(byte[] input);
+
+    /**
+     * Allocation free hash of a chunk of input, written at outOffset in out
+     */
+    public abstract void hash(byte[] input, int offset, int length, byte[] out, int outOffset);
+
+    /**
+     * Hash of the remaining bytes of input, which is consumed
+     */
+    public abstract byte[] hash(ByteBuffer input);
+
+    /**
+     * @return hashes of the inputs, in order, large batches being split over the common ForkJoinPool
+     */
+    public byte[][] hashBatch(byte[][] inputs) {
+        return HashUtil.hashBatch(inputs, this::hash);
+    }
+
+    /**
+     * Hash i of the chunks of data is written at outOffset + 32 * i in out
+     */
+    public void hashBatch(byte[] data, int[] offsets, int[] lengths, byte[] out, int outOffset) {
+        HashUtil.hashBatch(data, offsets, lengths, out, outOffset, this::hash);
+    }
+
+    public int getDigestLength() {
+        return HashUtil.HASH_256_LENGTH;
+    }
+
+    /**
+     * @return incremental engine of the algorithm, from {@link CryptoHashRegistry}
+     */
+    public CryptoHash newEngine() {
+        return CryptoHashRegistry.create(hashType);
+    }
+
+    public CryptoHashType getHashType() {
+        return hashType;
+    }
+
+    public int getCode() {
+        return hashType.getCode();
+    }
+
+    public String getDescription() {
+        return hashType.getDescription();
+    }
+
+    /**
+     * @return SM3 for SM keys, whose signatures are SM2 with SM3, keccak-256 otherwise
+     */
+    public static HashAlgorithm of(SecureKeyType keyType) {
+        return keyType == SecureKeyType.SM ? SM3 : KECCAK_256;
+    }
+
+    public static HashAlgorithm getAlgorithmByCode(int code) {
+        for (HashAlgorithm item : HashAlgorithm.values()) {
+            if (item.getCode() == code) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    public static HashAlgorithm getAlgorithmByDescription(String description) {
+        for (HashAlgorithm item : HashAlgorithm.values()) {
+            if (item.getDescription().equalsIgnoreCase(description)) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
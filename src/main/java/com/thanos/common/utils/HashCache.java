@@ -0,0 +1,167 @@
+package com.thanos.common.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HashCache.java description：bounded cache of keccak-256 hashes by content, for
+ * payloads hashed again and again, e.g. the same transaction received from several
+ * peers. Opt in with {@link HashUtil#sha3(byte[], HashCache)} or {@link #sha3(byte[])}.
+ * <p>
+ * The cache is a direct mapped table: the slot comes from a 64 bits fingerprint of
+ * the content and its length, which is much cheaper than keccak, and a hit is only
+ * taken after comparing the whole content with the cached copy, so a collision
+ * costs a miss, never a wrong hash. Slots are replaced without locking, inputs
+ * longer than maxInputLength are hashed without being cached, so the cache holds
+ * at most capacity * maxInputLength bytes of content.
+ * <p>
+ * Thread safe.
+ */
+public class HashCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    public static final int DEFAULT_MAX_INPUT_LENGTH = 8192;
+
+    private static final HashCache DEFAULT = new HashCache(DEFAULT_CAPACITY, DEFAULT_MAX_INPUT_LENGTH);
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final AtomicReferenceArray<Entry> slots;
+
+    private final int mask;
+
+    private final int maxInputLength;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder uncached = new LongAdder();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of 2
+     */
+    public HashCache(int capacity, int maxInputLength) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+        this.mask = slots.length() - 1;
+        this.maxInputLength = maxInputLength;
+    }
+
+    /**
+     * @return cache shared by the callers not needing one of their own
+     */
+    public static HashCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return keccak-256 of input, from the cache when the same content was hashed recently
+     */
+    public byte[] sha3(byte[] input) {
+        if (input.length > maxInputLength) {
+            uncached.increment();
+            return HashUtil.sha3(input);
+        }
+        long fingerprint = fingerprint(input);
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.fingerprint == fingerprint && Arrays.equals(entry.content, input)) {
+            hits.increment();
+            return entry.hash.clone();
+        }
+        misses.increment();
+        byte[] hash = HashUtil.sha3(input);
+        // the content is copied, callers may reuse their buffer
+        slots.lazySet(slot, new Entry(fingerprint, input.clone(), hash));
+        return hash.clone();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of inputs too long to be cached
+     */
+    public long getUncachedCount() {
+        return uncached.sum();
+    }
+
+    /**
+     * @return hits over cacheable lookups, 0 before the first one
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Empties the cache and resets the statistics
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+        uncached.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HashCache{capacity=%s, hits=%s, misses=%s, uncached=%s, hitRate=%.3f}",
+                getCapacity(), getHitCount(), getMissCount(), getUncachedCount(), getHitRate());
+    }
+
+    /**
+     * Multiply-rotate mix of the content 8 bytes at a time, seeded with the length
+     */
+    static long fingerprint(byte[] data) {
+        long h = data.length * PRIME_1;
+        int i = 0;
+        for (; i + Long.BYTES <= data.length; i += Long.BYTES) {
+            h ^= ByteUtil.byteArrayToLong(data, i, Long.BYTES) * PRIME_2;
+            h = Long.rotateLeft(h, 27) * PRIME_1;
+        }
+        if (i < data.length) {
+            h ^= ByteUtil.byteArrayToLong(data, i, data.length - i) * PRIME_1;
+            h = Long.rotateLeft(h, 23) * PRIME_2;
+        }
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        return h;
+    }
+
+    private static final class Entry {
+
+        final long fingerprint;
+
+        final byte[] content;
+
+        final byte[] hash;
+
+        Entry(long fingerprint, byte[] content, byte[] hash) {
+            this.fingerprint = fingerprint;
+            this.content = content;
+            this.hash = hash;
+        }
+    }
+}
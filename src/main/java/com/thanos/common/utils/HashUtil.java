@@ -19,7 +19,11 @@ package com.thanos.common.utils;
 
 
 import com.thanos.common.crypto.CastleProvider;
+import com.thanos.common.crypto.cryptohash.Keccak256;
+import com.thanos.common.crypto.cryptohash.Keccak256Light;
+import com.thanos.common.crypto.cryptohash.Keccak512;
 import com.thanos.common.utils.rlp.RLP;
+import org.bouncycastle.crypto.digests.SM3Digest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.crypto.Digest;
@@ -27,12 +31,21 @@ import org.spongycastle.crypto.digests.RIPEMD160Digest;
 import org.spongycastle.crypto.digests.SHA3Digest;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 import static com.thanos.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
 import static java.util.Arrays.copyOfRange;
@@ -51,6 +64,37 @@ public class HashUtil {
     public static final String HASH_256_LIGHT_ALGORITHM_NAME;
     public static final String HASH_512_ALGORITHM_NAME;
 
+    public static final int HASH_256_LENGTH = 32;
+
+    // hashes per fork join task, smaller batches are hashed by the calling thread
+    private static final int BATCH_SPLIT_THRESHOLD = 64;
+
+    // mapped at once by sha3File, 68 MiB: 2^19 keccak-256 blocks of 136 bytes, so
+    // no block spans two chunks
+    private static final long FILE_MAP_CHUNK_SIZE = 136L << 19;
+
+    // copy buffer of direct ByteBuffers for engines only reading arrays
+    private static final int DIRECT_COPY_CHUNK_SIZE = 8192;
+
+    /**
+     * Engines reused by the calling thread, instead of a provider lookup and a new
+     * instance per getHash. They are reset before every use.
+     */
+    private static final ThreadLocal<Keccak256> KECCAK_256 = ThreadLocal.withInitial(Keccak256::new);
+
+    private static final ThreadLocal<Keccak512> KECCAK_512 = ThreadLocal.withInitial(Keccak512::new);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            LOG.error("Can't find such algorithm", e);
+            throw new RuntimeException(e);
+        }
+    });
+
+    private static final ThreadLocal<SM3Digest> SM3 = ThreadLocal.withInitial(SM3Digest::new);
+
     static {
         CastleProvider.getSpongyInstance();
         //Security.addProvider(CastleProvider.getSpongyInstance());
@@ -69,70 +113,308 @@ public class HashUtil {
      * @return - sha256 getHash of the data
      */
     public static byte[] sha256(byte[] input) {
+        return sha256Engine().digest(input);
+    }
+
+    /**
+     * Allocation free sha256 of a chunk of input
+     *
+     * @param out receives the 32 bytes hash at outOffset
+     */
+    public static void sha256(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        MessageDigest digest = sha256Engine();
+        digest.update(input, offset, length);
         try {
-            MessageDigest sha256digest = MessageDigest.getInstance("SHA-256");
-            return sha256digest.digest(input);
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
+            digest.digest(out, outOffset, HASH_256_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Output buffer too short for a 32 bytes hash", e);
         }
     }
 
+    /**
+     * sha256 of the remaining bytes of input, which is consumed
+     */
+    public static byte[] sha256(ByteBuffer input) {
+        MessageDigest digest = sha256Engine();
+        digest.update(input);
+        return digest.digest();
+    }
+
     public static byte[] sha3(byte[] input) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
+        if (input.length <= Keccak256Light.SINGLE_BLOCK_LIMIT) {
+            return Keccak256Light.hash(input, 0, input.length);
         }
+        Keccak256 digest = keccak256Engine();
+        digest.update(input, 0, input.length);
+        return digest.digest();
+    }
 
+    /**
+     * Keccak-256 of input through cache, for payloads likely to be hashed again
+     */
+    public static byte[] sha3(byte[] input, HashCache cache) {
+        return cache.sha3(input);
     }
 
-    public static byte[] sha3Light(byte[] input) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_LIGHT_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input);
+    /**
+     * Allocation free keccak-256 of a chunk of input
+     *
+     * @param out receives the 32 bytes getHash at outOffset
+     */
+    public static void sha3(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        if (out.length - outOffset < HASH_256_LENGTH) {
+            throw new IllegalArgumentException("Output buffer too short for a 32 bytes hash");
+        }
+        if (length <= Keccak256Light.SINGLE_BLOCK_LIMIT) {
+            Keccak256Light.hash(input, offset, length, out, outOffset);
+            return;
+        }
+        Keccak256 digest = keccak256Engine();
+        digest.update(input, offset, length);
+        digest.digest(out, outOffset, HASH_256_LENGTH);
+    }
+
+    /**
+     * Keccak-256 of the remaining bytes of input, which is consumed. Direct and
+     * mapped buffers are hashed in place, without a copy on the heap.
+     */
+    public static byte[] sha3(ByteBuffer input) {
+        Keccak256 digest = keccak256Engine();
+        digest.update(input);
+        return digest.digest();
+    }
+
+    /**
+     * Keccak-256 of a whole file, mapped in memory by chunks of
+     * {@link #FILE_MAP_CHUNK_SIZE} bytes (68 MiB), so even a multi-GB file is
+     * hashed with no heap buffer
+     */
+    public static byte[] sha3File(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Keccak256 digest = keccak256Engine();
+            long size = channel.size();
+            for (long position = 0; position < size; position += FILE_MAP_CHUNK_SIZE) {
+                long length = Math.min(FILE_MAP_CHUNK_SIZE, size - position);
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
             return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't hash file " + file, e);
         }
+    }
+
+    /**
+     * Same result as {@link #sha3(byte[])}, inputs up to
+     * {@link Keccak256Light#SINGLE_BLOCK_LIMIT} bytes are permuted as a single block
+     */
+    public static byte[] sha3Light(byte[] input) {
+        return Keccak256Light.hash(input, 0, input.length);
+    }
 
+    /**
+     * Keccak-256 of every input, large batches are split over the common ForkJoinPool.
+     * Consecutive single block inputs are hashed in pairs, see
+     * {@link Keccak256Light#hash2(byte[], int, int, byte[], int, byte[], int, int, byte[], int)}
+     *
+     * @return the hashes, in the order of inputs
+     */
+    public static byte[][] sha3Batch(byte[][] inputs) {
+        byte[][] hashes = new byte[inputs.length][];
+        runBatch(inputs.length, (from, to) -> {
+            int i = from;
+            while (i < to) {
+                byte[] input = inputs[i];
+                if (i + 1 < to && isSingleBlock(input.length) && isSingleBlock(inputs[i + 1].length)) {
+                    byte[] next = inputs[i + 1];
+                    hashes[i] = new byte[HASH_256_LENGTH];
+                    hashes[i + 1] = new byte[HASH_256_LENGTH];
+                    Keccak256Light.hash2(input, 0, input.length, hashes[i], 0,
+                            next, 0, next.length, hashes[i + 1], 0);
+                    i += 2;
+                } else {
+                    hashes[i++] = sha3(input);
+                }
+            }
+        });
+        return hashes;
     }
 
+    /**
+     * Keccak-256 of chunks of one buffer, chunk i being lengths[i] bytes at offsets[i],
+     * without allocating: hash i is written at outOffset + 32 * i in out.
+     * Consecutive single block chunks are hashed in pairs, as by {@link #sha3Batch(byte[][])}
+     */
+    public static void sha3Batch(byte[] data, int[] offsets, int[] lengths, byte[] out, int outOffset) {
+        checkBatch(offsets, lengths, out, outOffset);
+        runBatch(offsets.length, (from, to) -> {
+            int i = from;
+            while (i < to) {
+                int outPos = outOffset + HASH_256_LENGTH * i;
+                if (i + 1 < to && isSingleBlock(lengths[i]) && isSingleBlock(lengths[i + 1])) {
+                    Keccak256Light.hash2(data, offsets[i], lengths[i], out, outPos,
+                            data, offsets[i + 1], lengths[i + 1], out, outPos + HASH_256_LENGTH);
+                    i += 2;
+                } else {
+                    sha3(data, offsets[i], lengths[i], out, outPos);
+                    i++;
+                }
+            }
+        });
+    }
 
+    private static boolean isSingleBlock(int length) {
+        return length <= Keccak256Light.SINGLE_BLOCK_LIMIT;
+    }
 
-    public static byte[] sha3Dynamic(byte[]...inputs) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
+    public static byte[] sm3(byte[] input) {
+        return sm3(input, 0, input.length);
+    }
+
+    public static byte[] sm3(byte[] input, int offset, int length) {
+        byte[] out = new byte[HASH_256_LENGTH];
+        sm3(input, offset, length, out, 0);
+        return out;
+    }
 
-            for (byte[] input: inputs) {
-                digest.update(input);
+    /**
+     * Allocation free SM3 of a chunk of input
+     *
+     * @param out receives the 32 bytes hash at outOffset
+     */
+    public static void sm3(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        if (out.length - outOffset < HASH_256_LENGTH) {
+            throw new IllegalArgumentException("Output buffer too short for a 32 bytes hash");
+        }
+        SM3Digest digest = sm3Engine();
+        digest.update(input, offset, length);
+        digest.doFinal(out, outOffset);
+    }
+
+    /**
+     * SM3 of the remaining bytes of input, which is consumed
+     */
+    public static byte[] sm3(ByteBuffer input) {
+        SM3Digest digest = sm3Engine();
+        if (input.hasArray()) {
+            digest.update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+        } else {
+            // the engine only reads arrays, a direct buffer goes through a small chunk
+            byte[] chunk = new byte[Math.min(input.remaining(), DIRECT_COPY_CHUNK_SIZE)];
+            while (input.hasRemaining()) {
+                int length = Math.min(chunk.length, input.remaining());
+                input.get(chunk, 0, length);
+                digest.update(chunk, 0, length);
             }
-            return digest.digest();
-        } catch (Exception e) {
-            LOG.error("sha3Dynamic error!", e);
-            throw new RuntimeException(e);
         }
+        byte[] out = new byte[HASH_256_LENGTH];
+        digest.doFinal(out, 0);
+        return out;
+    }
 
+    /**
+     * SM3 of every input, large batches are split over the common ForkJoinPool
+     */
+    public static byte[][] sm3Batch(byte[][] inputs) {
+        return hashBatch(inputs, HashUtil::sm3);
     }
 
-    public static byte[] sha3(byte[] input1, byte[] input2) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input1, 0, input1.length);
-            digest.update(input2, 0, input2.length);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
+    /**
+     * SM3 counterpart of {@link #sha3Batch(byte[], int[], int[], byte[], int)}
+     */
+    public static void sm3Batch(byte[] data, int[] offsets, int[] lengths, byte[] out, int outOffset) {
+        hashBatch(data, offsets, lengths, out, outOffset, HashUtil::sm3);
+    }
+
+    static byte[][] hashBatch(byte[][] inputs, Function<byte[], byte[]> hash) {
+        byte[][] hashes = new byte[inputs.length][];
+        runBatch(inputs.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                hashes[i] = hash.apply(inputs[i]);
+            }
+        });
+        return hashes;
+    }
+
+    static void hashBatch(byte[] data, int[] offsets, int[] lengths, byte[] out, int outOffset, ChunkHash hash) {
+        checkBatch(offsets, lengths, out, outOffset);
+        runBatch(offsets.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                hash.hash(data, offsets[i], lengths[i], out, outOffset + HASH_256_LENGTH * i);
+            }
+        });
+    }
+
+    private static void checkBatch(int[] offsets, int[] lengths, byte[] out, int outOffset) {
+        if (offsets.length != lengths.length) {
+            throw new IllegalArgumentException("offsets and lengths must have the same size");
+        }
+        if (out.length - outOffset < (long) HASH_256_LENGTH * offsets.length) {
+            throw new IllegalArgumentException(String.format("Output buffer too short for %s hashes", offsets.length));
+        }
+    }
+
+    /**
+     * Shape of the allocation free hash functions, writing a 32 bytes hash into out
+     */
+    interface ChunkHash {
+
+        void hash(byte[] input, int offset, int length, byte[] out, int outOffset);
+    }
+
+    private static void runBatch(int count, BatchRange range) {
+        if (count <= BATCH_SPLIT_THRESHOLD) {
+            range.hash(0, count);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BatchTask(range, 0, count));
+        }
+    }
+
+    private interface BatchRange {
+
+        void hash(int from, int to);
+    }
+
+    private static class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BatchRange range;
+
+        private final int from;
+
+        private final int to;
+
+        BatchTask(BatchRange range, int from, int to) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                range.hash(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(range, from, mid), new BatchTask(range, mid, to));
+        }
+    }
+
+    public static byte[] sha3Dynamic(byte[]...inputs) {
+        Keccak256 digest = keccak256Engine();
+        for (byte[] input: inputs) {
+            digest.update(input, 0, input.length);
         }
+        return digest.digest();
+    }
+
+    public static byte[] sha3(byte[] input1, byte[] input2) {
+        Keccak256 digest = keccak256Engine();
+        digest.update(input1, 0, input1.length);
+        digest.update(input2, 0, input2.length);
+        return digest.digest();
     }
 
     /**
@@ -147,27 +429,16 @@ public class HashUtil {
      * @return - keccak getHash of the chunk
      */
     public static byte[] sha3(byte[] input, int start, int length) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input, start, length);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
-        }
+        Keccak256 digest = keccak256Engine();
+        digest.update(input, start, length);
+        return digest.digest();
     }
 
     public static byte[] sha512(byte[] input) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(HASH_512_ALGORITHM_NAME, CRYPTO_PROVIDER);
-            digest.update(input);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
-        }
+        Keccak512 digest = KECCAK_512.get();
+        digest.reset();
+        digest.update(input, 0, input.length);
+        return digest.digest();
     }
 
     /**
@@ -195,8 +466,11 @@ public class HashUtil {
      * @return - 20 right bytes of the getHash keccak of the data
      */
     public static byte[] sha3omit12(byte[] input) {
-        byte[] hash = sha3(input);
-        return copyOfRange(hash, 12, hash.length);
+        Keccak256 digest = keccak256Engine();
+        digest.update(input, 0, input.length);
+        byte[] hash = new byte[HASH_256_LENGTH];
+        digest.digest(hash, 0, HASH_256_LENGTH);
+        return copyOfRange(hash, 12, HASH_256_LENGTH);
     }
 
     /**
@@ -265,16 +539,31 @@ public class HashUtil {
      * @return -
      */
     public static byte[] doubleDigest(byte[] input, int offset, int length) {
-        try {
-            MessageDigest sha256digest = MessageDigest.getInstance("SHA-256");
-            sha256digest.reset();
-            sha256digest.update(input, offset, length);
-            byte[] first = sha256digest.digest();
-            return sha256digest.digest(first);
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Can't find such algorithm", e);
-            throw new RuntimeException(e);
-        }
+        MessageDigest sha256digest = sha256Engine();
+        sha256digest.update(input, offset, length);
+        byte[] first = sha256digest.digest();
+        return sha256digest.digest(first);
+    }
+
+    /**
+     * @return the keccak-256 engine of the calling thread, reset
+     */
+    private static Keccak256 keccak256Engine() {
+        Keccak256 digest = KECCAK_256.get();
+        digest.reset();
+        return digest;
+    }
+
+    private static SM3Digest sm3Engine() {
+        SM3Digest digest = SM3.get();
+        digest.reset();
+        return digest;
+    }
+
+    private static MessageDigest sha256Engine() {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return digest;
     }
 
     /**
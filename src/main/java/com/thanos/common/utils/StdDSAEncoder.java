@@ -5,6 +5,7 @@ import org.bouncycastle.asn1.*;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * 类StdDERUtil.java的实现描述：DER工具类
@@ -37,4 +38,18 @@ public class StdDSAEncoder {
 
         return sig;
     }
+
+    /**
+     * Accepts the canonical DER encoding only, as BouncyCastle StandardDSAEncoding does,
+     * so that a signature has a single byte encoding
+     */
+    public static BigInteger[] decodeStrict(
+            byte[] encoding)
+            throws IOException {
+        BigInteger[] sig = decode(encoding);
+        if (!Arrays.equals(encode(sig[0], sig[1]), encoding)) {
+            throw new IOException("Malformed signature, not canonical DER");
+        }
+        return sig;
+    }
 }
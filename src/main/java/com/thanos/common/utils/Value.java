@@ -89,21 +89,27 @@ public class Value {
     }
 
     public int asInt() {
+        if (isUndecodedItem()) {
+            return (int) ByteUtil.byteArrayToLong(rlp, RLP.getPayloadOffset(rlp, 0), RLP.getPayloadLength(rlp, 0));
+        }
         decode();
         if (isInt()) {
             return (Integer) value;
         } else if (isBytes()) {
-            return new BigInteger(1, asBytes()).intValue();
+            return ByteUtil.byteArrayToInt(asBytes());
         }
         return 0;
     }
 
     public long asLong() {
+        if (isUndecodedItem()) {
+            return ByteUtil.byteArrayToLong(rlp, RLP.getPayloadOffset(rlp, 0), RLP.getPayloadLength(rlp, 0));
+        }
         decode();
         if (isLong()) {
             return (Long) value;
         } else if (isBytes()) {
-            return new BigInteger(1, asBytes()).longValue();
+            return ByteUtil.byteArrayToLong(asBytes());
         }
         return 0;
     }
@@ -165,6 +171,13 @@ public class Value {
      *      Utility
      * *****************/
 
+    /**
+     * Numbers can be read straight from the rlp of an item, nothing is decoded
+     */
+    private boolean isUndecodedItem() {
+        return !decoded && rlp != null && rlp.length > 0 && !RLP.isList(rlp, 0);
+    }
+
     public void decode(){
         if (!this.decoded) {
             this.value = RLP.decode(rlp, 0).getDecoded();
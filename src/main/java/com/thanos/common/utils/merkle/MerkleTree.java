@@ -0,0 +1,278 @@
+package com.thanos.common.utils.merkle;
+
+import com.thanos.common.utils.HashUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MerkleTree.java description：binary Merkle tree of keccak-256 hashes. A parent is
+ * {@code sha3(left || right)}, a node without right sibling is promoted to the next
+ * level unchanged, and the root of an empty tree is {@link HashUtil#EMPTY_TRIE_HASH}.
+ * <p>
+ * Every level is kept as one flat array of 32 bytes hashes, so a proof is read
+ * without hashing, and appending leaves only rehashes the right spine, i.e. the
+ * parents of the new leaves up to the root. Large levels are hashed in parallel
+ * on a ForkJoinPool. When only the root is needed, {@link #computeRoot(byte[][])}
+ * does not retain the inner nodes.
+ * <p>
+ * Not thread safe.
+ */
+public class MerkleTree {
+
+    public static final int HASH_LENGTH = HashUtil.HASH_256_LENGTH;
+
+    // parents hashed per fork join task, smaller levels are hashed by the calling thread
+    public static final int DEFAULT_SPLIT_THRESHOLD = 256;
+
+    private final ForkJoinPool pool;
+
+    private final int splitThreshold;
+
+    // leaves first, the last level holds the root once the tree isn't empty
+    private final List<Level> levels = new ArrayList<>();
+
+    public MerkleTree() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public MerkleTree(ForkJoinPool pool, int splitThreshold) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("split threshold must be positive");
+        }
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+        this.levels.add(new Level());
+    }
+
+    /**
+     * @return tree of the keccak-256 hashes of items
+     */
+    public static MerkleTree ofData(byte[][] items) {
+        return new MerkleTree().appendAll(HashUtil.sha3Batch(items));
+    }
+
+    /**
+     * Root of the leaves, same as {@code new MerkleTree().appendAll(leafHashes).getRoot()}
+     * but only two levels are alive at a time
+     */
+    public static byte[] computeRoot(byte[][] leafHashes) {
+        return computeRoot(leafHashes, ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public static byte[] computeRoot(byte[][] leafHashes, ForkJoinPool pool, int splitThreshold) {
+        if (leafHashes.length == 0) {
+            return HashUtil.EMPTY_TRIE_HASH.clone();
+        }
+        int size = leafHashes.length;
+        byte[] nodes = new byte[size * HASH_LENGTH];
+        for (int i = 0; i < size; i++) {
+            checkHash(leafHashes[i]);
+            System.arraycopy(leafHashes[i], 0, nodes, i * HASH_LENGTH, HASH_LENGTH);
+        }
+        while (size > 1) {
+            int parentSize = (size + 1) >>> 1;
+            byte[] parents = new byte[parentSize * HASH_LENGTH];
+            hashLevel(pool, splitThreshold, nodes, size, parents, 0, parentSize);
+            nodes = parents;
+            size = parentSize;
+        }
+        return nodes;
+    }
+
+    /**
+     * Checks a proof returned by {@link #getProof(int)}
+     *
+     * @param leafCount number of leaves of the tree root belongs to
+     */
+    public static boolean verifyProof(byte[] root, byte[] leafHash, int index, int leafCount, byte[][] proof) {
+        if (index < 0 || index >= leafCount) {
+            return false;
+        }
+        byte[] node = leafHash;
+        int used = 0;
+        for (int size = leafCount; size > 1; size = (size + 1) >>> 1, index >>>= 1) {
+            if ((index & 1) == 1) {
+                if (used == proof.length) {
+                    return false;
+                }
+                node = HashUtil.sha3(proof[used++], node);
+            } else if (index + 1 < size) {
+                if (used == proof.length) {
+                    return false;
+                }
+                node = HashUtil.sha3(node, proof[used++]);
+            }
+        }
+        return used == proof.length && Arrays.equals(node, root);
+    }
+
+    public MerkleTree append(byte[] leafHash) {
+        return appendAll(new byte[][]{leafHash});
+    }
+
+    /**
+     * Adds leaves at the right of the tree and rehashes their parents only
+     */
+    public MerkleTree appendAll(byte[][] leafHashes) {
+        if (leafHashes.length == 0) {
+            return this;
+        }
+        Level leaves = levels.get(0);
+        int dirty = leaves.size;
+        leaves.ensureCapacity(leaves.size + leafHashes.length);
+        for (byte[] leafHash : leafHashes) {
+            checkHash(leafHash);
+            System.arraycopy(leafHash, 0, leaves.nodes, leaves.size * HASH_LENGTH, HASH_LENGTH);
+            leaves.size++;
+        }
+
+        for (int k = 0; levels.get(k).size > 1; k++) {
+            Level children = levels.get(k);
+            if (k + 1 == levels.size()) {
+                levels.add(new Level());
+            }
+            Level parents = levels.get(k + 1);
+            int parentSize = (children.size + 1) >>> 1;
+            // parent i covers children 2i and 2i + 1
+            dirty >>>= 1;
+            parents.ensureCapacity(parentSize);
+            parents.size = parentSize;
+            hashLevel(pool, splitThreshold, children.nodes, children.size, parents.nodes, dirty, parentSize);
+        }
+        return this;
+    }
+
+    /**
+     * @return number of leaves
+     */
+    public int size() {
+        return levels.get(0).size;
+    }
+
+    /**
+     * @return number of levels, leaves and root included, 0 for an empty tree
+     */
+    public int getHeight() {
+        return size() == 0 ? 0 : levels.size();
+    }
+
+    public byte[] getRoot() {
+        if (size() == 0) {
+            return HashUtil.EMPTY_TRIE_HASH.clone();
+        }
+        return levels.get(levels.size() - 1).get(0);
+    }
+
+    public byte[] getLeaf(int index) {
+        checkIndex(index);
+        return levels.get(0).get(index);
+    }
+
+    /**
+     * @return siblings of the path from the leaf to the root, leaf level first;
+     * a level where the node is promoted has no sibling
+     */
+    public byte[][] getProof(int index) {
+        checkIndex(index);
+        List<byte[]> proof = new ArrayList<>(levels.size());
+        for (int k = 0; levels.get(k).size > 1; k++, index >>>= 1) {
+            Level level = levels.get(k);
+            int sibling = index ^ 1;
+            if (sibling < level.size) {
+                proof.add(level.get(sibling));
+            }
+        }
+        return proof.toArray(new byte[0][]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("leaf %s of %s", index, size()));
+        }
+    }
+
+    private static void checkHash(byte[] hash) {
+        if (hash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException(String.format("Merkle leaf must be a %s bytes hash", HASH_LENGTH));
+        }
+    }
+
+    private static void hashLevel(ForkJoinPool pool, int splitThreshold, byte[] children, int childSize,
+                                  byte[] parents, int from, int to) {
+        if (to - from <= splitThreshold) {
+            hashRange(children, childSize, parents, from, to);
+        } else {
+            pool.invoke(new HashTask(splitThreshold, children, childSize, parents, from, to));
+        }
+    }
+
+    private static void hashRange(byte[] children, int childSize, byte[] parents, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int left = i << 1;
+            if (left + 1 < childSize) {
+                // both children are adjacent, hashed in place
+                HashUtil.sha3(children, left * HASH_LENGTH, 2 * HASH_LENGTH, parents, i * HASH_LENGTH);
+            } else {
+                System.arraycopy(children, left * HASH_LENGTH, parents, i * HASH_LENGTH, HASH_LENGTH);
+            }
+        }
+    }
+
+    private static final class Level {
+
+        private byte[] nodes = new byte[HASH_LENGTH];
+
+        private int size;
+
+        void ensureCapacity(int capacity) {
+            if (capacity * HASH_LENGTH > nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(capacity, size << 1) * HASH_LENGTH);
+            }
+        }
+
+        byte[] get(int index) {
+            return Arrays.copyOfRange(nodes, index * HASH_LENGTH, (index + 1) * HASH_LENGTH);
+        }
+    }
+
+    private static class HashTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int splitThreshold;
+
+        private final byte[] children;
+
+        private final int childSize;
+
+        private final byte[] parents;
+
+        private final int from;
+
+        private final int to;
+
+        HashTask(int splitThreshold, byte[] children, int childSize, byte[] parents, int from, int to) {
+            this.splitThreshold = splitThreshold;
+            this.children = children;
+            this.childSize = childSize;
+            this.parents = parents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= splitThreshold) {
+                hashRange(children, childSize, parents, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new HashTask(splitThreshold, children, childSize, parents, from, mid),
+                    new HashTask(splitThreshold, children, childSize, parents, mid, to));
+        }
+    }
+}
@@ -20,12 +20,15 @@ package com.thanos.common.utils.rlp;
 import com.thanos.common.utils.ByteArrayWrapper;
 import com.thanos.common.utils.ByteUtil;
 import com.thanos.common.utils.DecodeResult;
+import com.thanos.common.utils.FastByteComparisons;
 import com.thanos.common.utils.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import static com.thanos.common.utils.ByteUtil.*;
@@ -69,7 +72,7 @@ public class RLP {
 
     public static final byte[] EMPTY_ELEMENT_RLP = encodeElement(new byte[0]);
 
-    private static final int MAX_DEPTH = 16;
+    static final int MAX_DEPTH = 16;
 
     /**
      * Allow for encoded up to size of 2^64 bytes *
@@ -85,7 +88,7 @@ public class RLP {
      * - so 56 and 2^64 space seems like the right place to put the cutoff
      * - also, that's where Bitcoin's varint does the cutof
      */
-    private static final int SIZE_THRESHOLD = 56;
+    static final int SIZE_THRESHOLD = 56;
 
     /** RLP encoding rules are defined as follows: */
 
@@ -100,7 +103,7 @@ public class RLP {
      * byte with value 0x80 plus the length of the string followed by the
      * string. The range of the first byte is thus [0x80, 0xb7].
      */
-    private static final int OFFSET_SHORT_ITEM = 0x80;
+    static final int OFFSET_SHORT_ITEM = 0x80;
 
     /**
      * [0xb7]
@@ -111,7 +114,7 @@ public class RLP {
      * \xb9\x04\x00 followed by the string. The range of the first byte is thus
      * [0xb8, 0xbf].
      */
-    private static final int OFFSET_LONG_ITEM = 0xb7;
+    static final int OFFSET_LONG_ITEM = 0xb7;
 
     /**
      * [0xc0]
@@ -121,7 +124,7 @@ public class RLP {
      * of the RLP encodings of the items. The range of the first byte is thus
      * [0xc0, 0xf7].
      */
-    private static final int OFFSET_SHORT_LIST = 0xc0;
+    static final int OFFSET_SHORT_LIST = 0xc0;
 
     /**
      * [0xf7]
@@ -131,7 +134,7 @@ public class RLP {
      * followed by the concatenation of the RLP encodings of the items. The
      * range of the first byte is thus [0xf8, 0xff].
      */
-    private static final int OFFSET_LONG_LIST = 0xf7;
+    static final int OFFSET_LONG_LIST = 0xf7;
 
 
     /* ******************************************************
@@ -242,6 +245,42 @@ public class RLP {
         return value;
     }
 
+    /**
+     * Decodes an unsigned 256 bit item without going through BigInteger.
+     * The value is returned as four 64 bit limbs, least significant first:
+     * value[0] holds bits 0..63 and value[3] bits 192..255
+     *
+     * @param value holder of 4 longs, overwritten
+     * @return value
+     */
+    public static long[] decodeUInt256(byte[] data, int index, long[] value) {
+        if ((data[index] & 0xFF) >= OFFSET_SHORT_LIST) {
+            throw new RuntimeException("wrong decode attempt");
+        }
+        return decodeUInt256Payload(data, getPayloadOffset(data, index), getPayloadLength(data, index), value);
+    }
+
+    public static long[] decodeUInt256(byte[] data, int index) {
+        return decodeUInt256(data, index, new long[4]);
+    }
+
+    /**
+     * @param offset offset of the payload, without the prefix
+     * @param length length of the payload
+     */
+    static long[] decodeUInt256Payload(byte[] data, int offset, int length, long[] value) {
+        if (length > 32) {
+            // more than 32 bytes can't be an uint256
+            throw new RuntimeException("wrong decode attempt");
+        }
+        value[0] = value[1] = value[2] = value[3] = 0;
+        int last = offset + length - 1;
+        for (int i = 0; i < length; i++) {
+            value[i >>> 3] |= (long) (data[last - i] & 0xFF) << ((i & 7) << 3);
+        }
+        return value;
+    }
+
     private static String decodeStringItem(byte[] data, int index) {
 
         final byte[] valueBytes = decodeItemBytes(data, index);
@@ -392,6 +431,61 @@ public class RLP {
         return -1;
     }
 
+    /**
+     * @return true if the element starting at pos is a list
+     */
+    public static boolean isList(byte[] data, int pos) {
+        return (data[pos] & 0xFF) >= OFFSET_SHORT_LIST;
+    }
+
+    /**
+     * @return position of the first payload byte of the element starting at pos,
+     * pos itself for a single byte item which is its own encoding
+     */
+    public static int getPayloadOffset(byte[] data, int pos) {
+        int prefix = data[pos] & 0xFF;
+        if (prefix < OFFSET_SHORT_ITEM) {
+            return pos;
+        } else if (prefix > OFFSET_LONG_LIST) {
+            return pos + 1 + prefix - OFFSET_LONG_LIST;
+        } else if (prefix >= OFFSET_SHORT_LIST) {
+            return pos + 1;
+        } else if (prefix > OFFSET_LONG_ITEM) {
+            return pos + 1 + prefix - OFFSET_LONG_ITEM;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * @return payload length of the element (item or list) starting at pos,
+     * checked against the bounds of data
+     */
+    public static int getPayloadLength(byte[] data, int pos) {
+        int prefix = data[pos] & 0xFF;
+        int length;
+        if (prefix < OFFSET_SHORT_ITEM) {
+            return 1;
+        } else if (prefix > OFFSET_LONG_LIST) {
+            return calcLength(prefix - OFFSET_LONG_LIST, data, pos);
+        } else if (prefix >= OFFSET_SHORT_LIST) {
+            length = prefix - OFFSET_SHORT_LIST;
+        } else if (prefix > OFFSET_LONG_ITEM) {
+            return calcLength(prefix - OFFSET_LONG_ITEM, data, pos);
+        } else {
+            length = prefix - OFFSET_SHORT_ITEM;
+        }
+        verifyLength(length, data.length - pos - 1);
+        return length;
+    }
+
+    /**
+     * @return a copy of the payload of the item starting at index,
+     * an empty array for the null item
+     */
+    public static byte[] decodeBytes(byte[] data, int index) {
+        return decodeItemBytes(data, index);
+    }
+
     /**
      * Parse length of long item or list.
      * RLP supports lengths with up to 8 bytes long,
@@ -487,6 +581,48 @@ public class RLP {
         fullTraverse(msgData, 0, startPos, startPos + 1, rlpList, Integer.MAX_VALUE);
         return rlpList.get(0);
     }
+
+    /**
+     * Same as {@link #decode2(byte[])} but doesn't copy anything:
+     * the result consists of {@link RLPItemSlice} and {@link RLPListSlice}
+     * elements pointing into msgData, so msgData must not be modified
+     * while the result is in use
+     *
+     * @param msgData - raw RLP data
+     * @return rlpList
+     * - outcome of recursive RLP structure
+     */
+    public static RLPList decode2Slice(byte[] msgData) {
+        return decode2Slice(msgData, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Zero-copy version of {@link #decode2(byte[], int)}
+     *
+     * @param msgData - raw RLP data
+     * @param depthLimit - limits depth of decoding
+     * @return rlpList
+     * - outcome of recursive RLP structure
+     */
+    public static RLPList decode2Slice(byte[] msgData, int depthLimit) {
+        if (depthLimit < 1) {
+            throw new RuntimeException("Depth limit should be 1 or higher");
+        }
+        RLPList rlpList = new RLPList();
+        sliceTraverse(msgData, 0, 0, msgData.length, rlpList, depthLimit);
+        return rlpList;
+    }
+
+    /**
+     * Zero-copy version of {@link #unwrapList(byte[])}
+     *
+     * @param msgData rlp data
+     * @return list of RLPItemSlices
+     */
+    public static RLPList unwrapListSlice(byte[] msgData) {
+        return (RLPList) decode2Slice(msgData, 2).get(0);
+    }
+
     /**
      * Get exactly one message payload
      */
@@ -633,6 +769,98 @@ public class RLP {
         }
     }
 
+    /**
+     * Same checks as {@link #fullTraverse(byte[], int, int, int, RLPList, int)},
+     * but items and lists are added as slices of msgData instead of copies
+     */
+    static void sliceTraverse(byte[] msgData, int level, int startPos,
+                              int endPos, RLPList rlpList, int depth) {
+        if (level > MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", MAX_DEPTH));
+        }
+
+        try {
+            if (msgData == null || msgData.length == 0)
+                return;
+            int pos = startPos;
+
+            while (pos < endPos) {
+
+                int prefix = msgData[pos] & 0xFF;
+
+                // list, either short [0xc0, 0xf7] or long [0xf8, 0xff]
+                if (prefix >= OFFSET_SHORT_LIST) {
+
+                    int lengthOfLength = 0;
+                    int length;
+                    if (prefix > OFFSET_LONG_LIST) {
+                        lengthOfLength = prefix - OFFSET_LONG_LIST;
+                        length = calcLength(lengthOfLength, msgData, pos);
+
+                        if (length < SIZE_THRESHOLD) {
+                            throw new RuntimeException("Short list has been encoded as long list");
+                        }
+                    } else {
+                        length = prefix - OFFSET_SHORT_LIST;
+                    }
+
+                    // check that length is in payload bounds
+                    verifyLength(length, msgData.length - pos - lengthOfLength - 1);
+
+                    int encodedLength = 1 + lengthOfLength + length;
+                    if (level + 1 < depth) {
+                        RLPListSlice newLevelList = new RLPListSlice(msgData, pos, encodedLength, 10);
+                        if (length > 0)
+                            sliceTraverse(msgData, level + 1, pos + lengthOfLength + 1,
+                                    pos + encodedLength, newLevelList, depth);
+                        rlpList.add(newLevelList);
+                    } else {
+                        rlpList.add(new RLPItemSlice(msgData, pos, encodedLength));
+                    }
+
+                    pos += encodedLength;
+                    continue;
+                }
+                // It's an item with a payload more than 55 bytes
+                if (prefix > OFFSET_LONG_ITEM) {
+
+                    int lengthOfLength = prefix - OFFSET_LONG_ITEM;
+                    int length = calcLength(lengthOfLength, msgData, pos);
+
+                    if (length < SIZE_THRESHOLD) {
+                        throw new RuntimeException("Short item has been encoded as long item");
+                    }
+
+                    // check that length is in payload bounds
+                    verifyLength(length, msgData.length - pos - lengthOfLength - 1);
+
+                    rlpList.add(new RLPItemSlice(msgData, pos + lengthOfLength + 1, length));
+                    pos += lengthOfLength + length + 1;
+                    continue;
+                }
+                // It's an item less than 55 bytes long, or the null item
+                if (prefix >= OFFSET_SHORT_ITEM) {
+
+                    int length = prefix - OFFSET_SHORT_ITEM;
+                    verifyLength(length, msgData.length - pos - 1);
+
+                    if (length == 1 && (msgData[pos + 1] & 0xFF) < OFFSET_SHORT_ITEM) {
+                        throw new RuntimeException("Single byte has been encoded as byte string");
+                    }
+
+                    rlpList.add(new RLPItemSlice(msgData, pos + 1, length));
+                    pos += 1 + length;
+                    continue;
+                }
+                // single byte item
+                rlpList.add(new RLPItemSlice(msgData, pos, 1));
+                pos += 1;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("RLP wrong encoding (" + Hex.toHexString(msgData, startPos, endPos - startPos) + ")", e);
+        }
+    }
+
     /**
      * Compares supplied length information with maximum possible
      * @param suppliedLength    Length info from header
@@ -688,40 +916,142 @@ public class RLP {
         }
     }
 
+    /**
+     * Lazily decoded list, elements are only indexed (offset and length in the
+     * original message) and decoded on access. Child lists are indexed on first
+     * access and memoized. Not thread safe.
+     */
     public static final class LList {
+
+        private static final int INITIAL_CAPACITY = 16;
+
         private final byte[] rlp;
-        private final int[] offsets = new int[32];
-        private final int[] lens = new int[32];
+
+        // range of the whole list encoding in rlp, encodedOffset is -1 if unknown
+        private final int encodedOffset;
+        private final int encodedLength;
+
+        // payload offset and length of every element, length is (-1 - len) for lists
+        private int[] offsets;
+        private int[] lens;
         private int cnt;
 
+        private LList[] children;
+
         public LList(byte[] rlp) {
+            this(rlp, -1, 0, INITIAL_CAPACITY);
+        }
+
+        private LList(byte[] rlp, int encodedOffset, int encodedLength, int capacity) {
             this.rlp = rlp;
+            this.encodedOffset = encodedOffset;
+            this.encodedLength = encodedLength;
+            this.offsets = new int[capacity];
+            this.lens = new int[capacity];
         }
 
+        /**
+         * @return the original encoding of the list, or the elements wrapped as a
+         * list when this is a top level sequence without a list prefix
+         */
         public byte[] getEncoded() {
-            byte encoded[][] = new byte[cnt][];
+            if (encodedOffset >= 0) {
+                return copyOfRange(rlp, encodedOffset, encodedOffset + encodedLength);
+            }
+            int payloadLength = 0;
             for (int i = 0; i < cnt; i++) {
-                encoded[i] = encodeElement(getBytes(i));
+                payloadLength += getEncodedLength(i);
             }
-            return encodeList(encoded);
+            byte[] encoded = new byte[calcListHeaderSize(payloadLength) + payloadLength];
+            int pos = encodeListHeader(payloadLength, encoded, 0);
+            for (int i = 0; i < cnt; i++) {
+                int length = getEncodedLength(i);
+                System.arraycopy(rlp, getEncodedOffset(i), encoded, pos, length);
+                pos += length;
+            }
+            return encoded;
         }
 
+        /**
+         * Indexes an element, off and len are the payload range in the message
+         * (off is the prefix position for the null item)
+         */
         public void add(int off, int len, boolean isList) {
+            if (cnt == offsets.length) {
+                int capacity = offsets.length << 1;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lens = Arrays.copyOf(lens, capacity);
+                if (children != null) {
+                    children = Arrays.copyOf(children, capacity);
+                }
+            }
             offsets[cnt] = off;
             lens[cnt] = isList ? (-1 - len) : len;
             cnt++;
         }
 
         public byte[] getBytes(int idx) {
-            int len = lens[idx];
-            len = len < 0 ? (-len - 1) : len;
+            int len = getLength(idx);
             byte[] ret = new byte[len];
             System.arraycopy(rlp, offsets[idx], ret, 0, len);
             return ret;
         }
 
+        /**
+         * Copies the payload of element idx into dest without intermediate array
+         */
+        public void copyBytes(int idx, byte[] dest, int destPos) {
+            System.arraycopy(rlp, offsets[idx], dest, destPos, getLength(idx));
+        }
+
+        /**
+         * @return payload of element idx as a view over the message
+         */
+        public RLPItemSlice getSlice(int idx) {
+            return new RLPItemSlice(rlp, offsets[idx], getLength(idx));
+        }
+
+        /**
+         * @return the original encoding (prefix included) of element idx
+         */
+        public byte[] getEncoded(int idx) {
+            int offset = getEncodedOffset(idx);
+            return copyOfRange(rlp, offset, offset + getEncodedLength(idx));
+        }
+
+        public long getLong(int idx) {
+            return decodeLong(rlp, getEncodedOffset(idx));
+        }
+
+        public int getInt(int idx) {
+            return decodeInt(rlp, getEncodedOffset(idx));
+        }
+
+        public long[] getUInt256(int idx, long[] value) {
+            return decodeUInt256(rlp, getEncodedOffset(idx), value);
+        }
+
+        public BigInteger getBigInteger(int idx) {
+            int len = getLength(idx);
+            return len == 0 ? BigInteger.ZERO : new BigInteger(1, getBytes(idx));
+        }
+
         public LList getList(int idx) {
-            return decodeLazyList(rlp, offsets[idx], -lens[idx] - 1);
+            if (!isList(idx)) {
+                throw new RuntimeException("RLP item found where a list was expected");
+            }
+            if (children == null) {
+                children = new LList[offsets.length];
+            }
+            LList child = children[idx];
+            if (child == null) {
+                int len = getLength(idx);
+                int start = getEncodedOffset(idx);
+                child = new LList(rlp, start, offsets[idx] - start + len, INITIAL_CAPACITY);
+                indexLazyList(child, rlp, offsets[idx], len);
+                children[idx] = child;
+            }
+            return child;
         }
 
         public boolean isList(int idx) {
@@ -731,6 +1061,49 @@ public class RLP {
         public int size() {
             return cnt;
         }
+
+        /**
+         * @return the message the list points into
+         */
+        public byte[] getRLP() {
+            return rlp;
+        }
+
+        /**
+         * @return payload offset of element idx in {@link #getRLP()}
+         */
+        public int getOffset(int idx) {
+            return offsets[idx];
+        }
+
+        /**
+         * @return payload length of element idx
+         */
+        public int getLength(int idx) {
+            int len = lens[idx];
+            return len < 0 ? (-len - 1) : len;
+        }
+
+        /**
+         * @return position of the prefix of element idx in {@link #getRLP()}
+         */
+        public int getEncodedOffset(int idx) {
+            int off = offsets[idx];
+            int len = getLength(idx);
+            if (!isList(idx) && (len == 0 || (len == 1 && (rlp[off] & 0xFF) < OFFSET_SHORT_ITEM))) {
+                // null item and single byte item are indexed at their prefix
+                return off;
+            }
+            return off - calcLengthPrefixSize(len);
+        }
+
+        public int getEncodedLength(int idx) {
+            if (lens[idx] == 0) {
+                // null item, just the prefix
+                return 1;
+            }
+            return offsets[idx] - getEncodedOffset(idx) + getLength(idx);
+        }
     }
 
     public static LList decodeLazyList(byte[] data) {
@@ -742,7 +1115,13 @@ public class RLP {
             return null;
         }
         LList ret = new LList(data);
+        indexLazyList(ret, data, pos, length);
+        return ret;
+    }
+
+    private static void indexLazyList(LList ret, byte[] data, int pos, int length) {
         int end = pos + length;
+        verifyLength(end, data.length);
 
         while(pos < end) {
             int prefix = data[pos] & 0xFF;
@@ -754,31 +1133,39 @@ public class RLP {
                 pos++;
             } else if (prefix <= OFFSET_LONG_ITEM) {  // [0x81, 0xb7]
                 int len = prefix - OFFSET_SHORT_ITEM; // length of the encoded bytes
+                verifyLength(len, end - pos - 1);
+                if (len == 1 && (data[pos + 1] & 0xFF) < OFFSET_SHORT_ITEM) {
+                    throw new RuntimeException("Single byte has been encoded as byte string");
+                }
                 ret.add(pos + 1, len, false);
                 pos += len + 1;
             } else if (prefix < OFFSET_SHORT_LIST) {  // [0xb8, 0xbf]
                 int lenlen = prefix - OFFSET_LONG_ITEM; // length of length the encoded bytes
-                int lenbytes = byteArrayToInt(copyOfRange(data, pos + 1, pos + 1 + lenlen)); // length of encoded bytes
+                int lenbytes = calcLength(lenlen, data, pos); // length of encoded bytes
+                if (lenbytes < SIZE_THRESHOLD) {
+                    throw new RuntimeException("Short item has been encoded as long item");
+                }
                 // check that length is in payload bounds
-                verifyLength(lenbytes, data.length - pos - 1 - lenlen);
+                verifyLength(lenbytes, end - pos - 1 - lenlen);
                 ret.add(pos + 1 + lenlen, lenbytes, false);
                 pos += 1 + lenlen + lenbytes;
             } else if (prefix <= OFFSET_LONG_LIST) {  // [0xc0, 0xf7]
                 int len = prefix - OFFSET_SHORT_LIST; // length of the encoded list
+                verifyLength(len, end - pos - 1);
                 ret.add(pos + 1, len, true);
                 pos += 1 + len;
-            } else if (prefix <= 0xFF) {  // [0xf8, 0xff]
+            } else {  // [0xf8, 0xff]
                 int lenlen = prefix - OFFSET_LONG_LIST; // length of length the encoded list
-                int lenlist = byteArrayToInt(copyOfRange(data, pos + 1, pos + 1 + lenlen)); // length of encoded bytes
+                int lenlist = calcLength(lenlen, data, pos); // length of encoded bytes
+                if (lenlist < SIZE_THRESHOLD) {
+                    throw new RuntimeException("Short list has been encoded as long list");
+                }
                 // check that length is in payload bounds
-                verifyLength(lenlist, data.length - pos - 1 - lenlen);
+                verifyLength(lenlist, end - pos - 1 - lenlen);
                 ret.add(pos + 1 + lenlen, lenlist, true);
                 pos += 1 + lenlen + lenlist; // start at position of first element in list
-            } else {
-                throw new RuntimeException("Only byte values between 0x00 and 0xFF are supported, but got: " + prefix);
             }
         }
-        return ret;
     }
 
 
@@ -811,29 +1198,425 @@ public class RLP {
      * @return byte[] RLP encoded
      */
     public static byte[] encode(Object input) {
-        Value val = new Value(input);
-        if (val.isList()) {
-            List<Object> inputArray = val.asList();
-            if (inputArray.isEmpty()) {
-                return encodeLength(inputArray.size(), OFFSET_SHORT_LIST);
+        EncodePlan plan = new EncodePlan(input);
+        byte[] output = new byte[plan.size()];
+        plan.write(output, 0);
+        return output;
+    }
+
+    /**
+     * Calculates the exact length of {@link #encode(Object)} output
+     * without encoding anything
+     *
+     * @param input as object or List of objects
+     * @return size of RLP encoded input in bytes
+     */
+    public static int calcEncodedSize(Object input) {
+        return new EncodePlan(input).size();
+    }
+
+    /**
+     * Writes the RLP encoding of input into dest, the output is equal to
+     * {@link #encode(Object)}. dest must have at least
+     * {@link #calcEncodedSize(Object)} bytes left
+     *
+     * @param input as object or List of objects
+     * @param dest output buffer
+     * @param destPos position to start writing at
+     * @return position right after the written encoding
+     */
+    public static int encode(Object input, byte[] dest, int destPos) {
+        return new EncodePlan(input).write(dest, destPos);
+    }
+
+    /**
+     * Writes the RLP encoding of input at the position of dest and advances it,
+     * heap and direct buffers are both written in place.
+     *
+     * @param input as object or List of objects
+     * @param dest output buffer
+     */
+    public static void encode(Object input, ByteBuffer dest) {
+        EncodePlan plan = new EncodePlan(input);
+        int size = plan.size();
+        if (dest.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (dest.hasArray()) {
+            plan.write(dest.array(), dest.arrayOffset() + dest.position());
+            dest.position(dest.position() + size);
+        } else {
+            plan.write(dest);
+        }
+    }
+
+    /**
+     * Encoding of an object tree in two walks: the first one sizes every list in
+     * post-order and converts every item to bytes once, the second one writes
+     * them, reading the list sizes and item bytes back in the order they were
+     * recorded.
+     */
+    static final class EncodePlan {
+
+        private final Object input;
+
+        private final int size;
+
+        // payload length of every list, in pre-order
+        private int[] listPayloads = new int[8];
+
+        private int listCount;
+
+        // bytes of every item which isn't a positive Integer or Long, in pre-order
+        private byte[][] items = new byte[8][];
+
+        private int itemCount;
+
+        private int listCursor;
+
+        private int itemCursor;
+
+        // header or number of at most 9 bytes, before it is put into a direct buffer
+        private byte[] scratch;
+
+        EncodePlan(Object input) {
+            this.input = input;
+            this.size = measure(input);
+        }
+
+        /**
+         * @return length of the encoding
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return position right after the written encoding
+         */
+        int write(byte[] dest, int destPos) {
+            listCursor = itemCursor = 0;
+            return write(input, dest, destPos);
+        }
+
+        void write(ByteBuffer dest) {
+            listCursor = itemCursor = 0;
+            scratch = new byte[9];
+            write(input, dest);
+        }
+
+        private int measure(Object input) {
+            Object value = unwrapValue(input);
+            if (isListValue(value)) {
+                if (listCount == listPayloads.length) {
+                    listPayloads = Arrays.copyOf(listPayloads, listCount << 1);
+                }
+                // reserved before the children, which come after it in pre-order
+                int index = listCount++;
+                int payloadLength = 0;
+                for (Object object : (Object[]) value) {
+                    payloadLength += measure(object);
+                }
+                listPayloads[index] = payloadLength;
+                return calcLengthPrefixSize(payloadLength) + payloadLength;
+            } else if (isPositiveNumber(value)) {
+                long number = ((Number) value).longValue();
+                return number <= OFFSET_SHORT_ITEM ? 1 : 1 + byteLength(number);
+            } else {
+                byte[] inputAsBytes = toBytes(value);
+                if (itemCount == items.length) {
+                    items = Arrays.copyOf(items, itemCount << 1);
+                }
+                items[itemCount++] = inputAsBytes;
+                if (inputAsBytes.length == 1 && (inputAsBytes[0] & 0xff) <= 0x80) {
+                    return 1;
+                }
+                return calcLengthPrefixSize(inputAsBytes.length) + inputAsBytes.length;
             }
-            byte[] output = ByteUtil.EMPTY_BYTE_ARRAY;
-            for (Object object : inputArray) {
-                output = concatenate(output, encode(object));
+        }
+
+        private int write(Object input, byte[] dest, int destPos) {
+            Object value = unwrapValue(input);
+            if (isListValue(value)) {
+                destPos = writeLength(listPayloads[listCursor++], OFFSET_SHORT_LIST, dest, destPos);
+                for (Object object : (Object[]) value) {
+                    destPos = write(object, dest, destPos);
+                }
+                return destPos;
+            } else if (isPositiveNumber(value)) {
+                long number = ((Number) value).longValue();
+                if (number <= OFFSET_SHORT_ITEM) {
+                    dest[destPos] = (byte) number;
+                    return destPos + 1;
+                }
+                int length = byteLength(number);
+                dest[destPos] = (byte) (OFFSET_SHORT_ITEM + length);
+                return writeBigEndian(number, length, dest, destPos + 1);
+            } else {
+                byte[] inputAsBytes = items[itemCursor++];
+                if (inputAsBytes.length == 1 && (inputAsBytes[0] & 0xff) <= 0x80) {
+                    dest[destPos] = inputAsBytes[0];
+                    return destPos + 1;
+                }
+                destPos = writeLength(inputAsBytes.length, OFFSET_SHORT_ITEM, dest, destPos);
+                System.arraycopy(inputAsBytes, 0, dest, destPos, inputAsBytes.length);
+                return destPos + inputAsBytes.length;
             }
-            byte[] prefix = encodeLength(output.length, OFFSET_SHORT_LIST);
-            return concatenate(prefix, output);
-        } else {
-            byte[] inputAsBytes = toBytes(input);
-            if (inputAsBytes.length == 1 && (inputAsBytes[0] & 0xff) <= 0x80) {
-                return inputAsBytes;
+        }
+
+        /**
+         * Same bytes as {@link #write(Object, byte[], int)}, headers and numbers
+         * go through the scratch array, item bytes are put as they are
+         */
+        private void write(Object input, ByteBuffer dest) {
+            Object value = unwrapValue(input);
+            if (isListValue(value)) {
+                dest.put(scratch, 0, writeLength(listPayloads[listCursor++], OFFSET_SHORT_LIST, scratch, 0));
+                for (Object object : (Object[]) value) {
+                    write(object, dest);
+                }
+            } else if (isPositiveNumber(value)) {
+                long number = ((Number) value).longValue();
+                if (number <= OFFSET_SHORT_ITEM) {
+                    dest.put((byte) number);
+                    return;
+                }
+                int length = byteLength(number);
+                scratch[0] = (byte) (OFFSET_SHORT_ITEM + length);
+                dest.put(scratch, 0, writeBigEndian(number, length, scratch, 1));
             } else {
-                byte[] firstByte = encodeLength(inputAsBytes.length, OFFSET_SHORT_ITEM);
-                return concatenate(firstByte, inputAsBytes);
+                byte[] inputAsBytes = items[itemCursor++];
+                if (inputAsBytes.length == 1 && (inputAsBytes[0] & 0xff) <= 0x80) {
+                    dest.put(inputAsBytes[0]);
+                    return;
+                }
+                dest.put(scratch, 0, writeLength(inputAsBytes.length, OFFSET_SHORT_ITEM, scratch, 0));
+                dest.put(inputAsBytes);
+            }
+        }
+    }
+
+    /**
+     * @return length of {@link #encodeElement(byte[])} output
+     */
+    public static int calcElementSize(byte[] srcData) {
+        if (isNullOrZeroArray(srcData)) {
+            return 1;
+        } else if (srcData.length == 1 && (srcData[0] & 0xFF) < 0x80) {
+            return 1;
+        } else {
+            return calcLengthPrefixSize(srcData.length) + srcData.length;
+        }
+    }
+
+    /**
+     * Writes the same bytes as {@link #encodeElement(byte[])} into dest
+     *
+     * @return position right after the written element
+     */
+    public static int encodeElement(byte[] srcData, byte[] dest, int destPos) {
+        if (isNullOrZeroArray(srcData)) {
+            dest[destPos] = (byte) OFFSET_SHORT_ITEM;
+            return destPos + 1;
+        } else if (srcData.length == 1 && (srcData[0] & 0xFF) < 0x80) {
+            dest[destPos] = srcData[0];
+            return destPos + 1;
+        } else {
+            destPos = writeLength(srcData.length, OFFSET_SHORT_ITEM, dest, destPos);
+            System.arraycopy(srcData, 0, dest, destPos, srcData.length);
+            return destPos + srcData.length;
+        }
+    }
+
+    /**
+     * @return length of {@link #encodeLong(long, byte[], int)} output
+     */
+    public static int calcLongSize(long value) {
+        if (value < 0) {
+            throw new RuntimeException("negative numbers are not allowed");
+        }
+        return value < OFFSET_SHORT_ITEM ? 1 : 1 + byteLength(value);
+    }
+
+    /**
+     * Writes value as a big endian item without leading zeroes, zero being the
+     * null item, i.e. the same bytes as {@link #encodeBigInteger(BigInteger)}
+     *
+     * @return position right after the written item
+     */
+    public static int encodeLong(long value, byte[] dest, int destPos) {
+        if (value < 0) {
+            throw new RuntimeException("negative numbers are not allowed");
+        }
+        if (value == 0) {
+            dest[destPos] = (byte) OFFSET_SHORT_ITEM;
+            return destPos + 1;
+        } else if (value < OFFSET_SHORT_ITEM) {
+            dest[destPos] = (byte) value;
+            return destPos + 1;
+        }
+        int length = byteLength(value);
+        dest[destPos] = (byte) (OFFSET_SHORT_ITEM + length);
+        return writeBigEndian(value, length, dest, destPos + 1);
+    }
+
+    /**
+     * @return length of {@link #encodeInt(int, byte[], int)} output
+     */
+    public static int calcIntSize(int value) {
+        return calcLongSize(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes value as {@link #encodeLong(long, byte[], int)} does, negative values
+     * are taken as unsigned 32 bit like {@link #encodeInt(int)} does
+     *
+     * @return position right after the written item
+     */
+    public static int encodeInt(int value, byte[] dest, int destPos) {
+        return encodeLong(value & 0xFFFFFFFFL, dest, destPos);
+    }
+
+    /**
+     * Writes the same bytes as {@link #encodeLong(long, byte[], int)} at the
+     * position of dest and advances it
+     */
+    public static void encodeLong(long value, ByteBuffer dest) {
+        int size = calcLongSize(value);
+        if (dest.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (value == 0) {
+            dest.put((byte) OFFSET_SHORT_ITEM);
+        } else if (value < OFFSET_SHORT_ITEM) {
+            dest.put((byte) value);
+        } else {
+            int length = size - 1;
+            dest.put((byte) (OFFSET_SHORT_ITEM + length));
+            for (int i = length - 1; i >= 0; --i) {
+                dest.put((byte) (value >>> (i << 3)));
             }
         }
     }
 
+    /**
+     * @return length of {@link #encodeUInt256(long[], byte[], int)} output
+     */
+    public static int calcUInt256Size(long[] value) {
+        int length = uint256ByteLength(value);
+        if (length == 0 || (length == 1 && value[0] < OFFSET_SHORT_ITEM)) {
+            return 1;
+        }
+        return 1 + length;
+    }
+
+    /**
+     * Writes an unsigned 256 bit value given as limbs, least significant first
+     * (see {@link #decodeUInt256(byte[], int, long[])}), the output is the same as
+     * {@link #encodeBigInteger(BigInteger)} of that value
+     *
+     * @return position right after the written item
+     */
+    public static int encodeUInt256(long[] value, byte[] dest, int destPos) {
+        int length = uint256ByteLength(value);
+        if (length == 0) {
+            dest[destPos] = (byte) OFFSET_SHORT_ITEM;
+            return destPos + 1;
+        } else if (length == 1 && value[0] < OFFSET_SHORT_ITEM) {
+            dest[destPos] = (byte) value[0];
+            return destPos + 1;
+        }
+        dest[destPos++] = (byte) (OFFSET_SHORT_ITEM + length);
+        for (int i = length - 1; i >= 0; --i) {
+            dest[destPos++] = (byte) (value[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return destPos;
+    }
+
+    /**
+     * @return number of bytes of an uint256 without leading zeroes
+     */
+    private static int uint256ByteLength(long[] value) {
+        for (int limb = 3; limb >= 0; --limb) {
+            if (value[limb] != 0) {
+                return (limb << 3) + byteLength(value[limb]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return length of {@link #encodeListHeader(int)} output
+     */
+    public static int calcListHeaderSize(int payloadLength) {
+        return calcLengthPrefixSize(payloadLength);
+    }
+
+    /**
+     * Writes the same bytes as {@link #encodeListHeader(int)} into dest
+     *
+     * @return position of the first list element
+     */
+    public static int encodeListHeader(int payloadLength, byte[] dest, int destPos) {
+        return writeLength(payloadLength, OFFSET_SHORT_LIST, dest, destPos);
+    }
+
+    private static int calcLengthPrefixSize(int length) {
+        return length < SIZE_THRESHOLD ? 1 : 1 + byteLength(length);
+    }
+
+    /**
+     * Same output as {@link #encodeLength(int, int)} written into dest
+     */
+    private static int writeLength(int length, int offset, byte[] dest, int destPos) {
+        if (length < SIZE_THRESHOLD) {
+            dest[destPos] = (byte) (length + offset);
+            return destPos + 1;
+        }
+        int lengthOfLength = byteLength(length);
+        dest[destPos] = (byte) (lengthOfLength + offset + SIZE_THRESHOLD - 1);
+        return writeBigEndian(length, lengthOfLength, dest, destPos + 1);
+    }
+
+    static int writeBigEndian(long value, int length, byte[] dest, int destPos) {
+        for (int i = length - 1; i >= 0; --i) {
+            dest[destPos + i] = (byte) value;
+            value >>>= 8;
+        }
+        return destPos + length;
+    }
+
+    /**
+     * @return number of bytes of a positive value without leading zeroes
+     */
+    static int byteLength(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) >>> 3;
+    }
+
+    private static Object unwrapValue(Object input) {
+        while (input instanceof Value) {
+            input = ((Value) input).asObj();
+        }
+        return input;
+    }
+
+    private static boolean isListValue(Object value) {
+        return value != null && value.getClass().isArray() && !value.getClass().getComponentType().isPrimitive();
+    }
+
+    /**
+     * Positive Integer and Long are encoded without going through BigInteger,
+     * zero and negative values keep using {@link #toBytes(Object)}
+     */
+    private static boolean isPositiveNumber(Object value) {
+        if (value instanceof Long) {
+            return (Long) value > 0;
+        } else if (value instanceof Integer) {
+            return (Integer) value > 0;
+        }
+        return false;
+    }
+
     /**
      * Integer limitation goes up to 2^31-1 so length can never be bigger than MAX_ITEM_LENGTH
      */
@@ -1058,55 +1841,64 @@ public class RLP {
         }
     }
 
+    /**
+     * Encodes the set as a list, elements in the iteration order of data
+     */
     public static byte[] encodeSet(Set<ByteArrayWrapper> data) {
+        return encodeSet(data, false);
+    }
 
-        int dataLength = 0;
-        Set<byte[]> encodedElements = new HashSet<>();
+    /**
+     * Encodes the set as a list written straight into the output
+     *
+     * @param canonical if true the elements are sorted lexicographically (unsigned),
+     *                  so equal sets always have the same encoding and hash,
+     *                  otherwise they keep the iteration order of data
+     */
+    public static byte[] encodeSet(Set<ByteArrayWrapper> data, boolean canonical) {
+        byte[][] elements = new byte[data.size()][];
+        int i = 0;
         for (ByteArrayWrapper element : data) {
-
-            byte[] encodedElement = RLP.encodeElement(element.getData());
-            dataLength += encodedElement.length;
-            encodedElements.add(encodedElement);
+            elements[i++] = element.getData();
         }
-
-        byte[] listHeader = encodeListHeader(dataLength);
-
-        byte[] output = new byte[listHeader.length + dataLength];
-
-        System.arraycopy(listHeader, 0, output, 0, listHeader.length);
-
-        int cummStart = listHeader.length;
-        for (byte[] element : encodedElements) {
-            System.arraycopy(element, 0, output, cummStart, element.length);
-            cummStart += element.length;
-        }
-
-        return output;
+        return encodeElements(elements, canonical);
     }
 
+    /**
+     * Encodes the set as a list, elements in the iteration order of data
+     */
     public static byte[] encodeStringSet(Set<String> data) {
+        return encodeStringSet(data, false);
+    }
 
-        int dataLength = 0;
-        Set<byte[]> encodedElements = new HashSet<>();
+    /**
+     * Same as {@link #encodeSet(Set, boolean)} for strings, canonical order
+     * is the lexicographic order of their bytes
+     */
+    public static byte[] encodeStringSet(Set<String> data, boolean canonical) {
+        byte[][] elements = new byte[data.size()][];
+        int i = 0;
         for (String element : data) {
-
-            byte[] encodedElement = RLP.encodeElement(element.getBytes());
-            dataLength += encodedElement.length;
-            encodedElements.add(encodedElement);
+            elements[i++] = element.getBytes();
         }
+        return encodeElements(elements, canonical);
+    }
 
-        byte[] listHeader = encodeListHeader(dataLength);
-
-        byte[] output = new byte[listHeader.length + dataLength];
-
-        System.arraycopy(listHeader, 0, output, 0, listHeader.length);
+    private static byte[] encodeElements(byte[][] elements, boolean canonical) {
+        if (canonical) {
+            Arrays.sort(elements, (a, b) -> FastByteComparisons.compareTo(a, 0, a.length, b, 0, b.length));
+        }
 
-        int cummStart = listHeader.length;
-        for (byte[] element : encodedElements) {
-            System.arraycopy(element, 0, output, cummStart, element.length);
-            cummStart += element.length;
+        int dataLength = 0;
+        for (byte[] element : elements) {
+            dataLength += calcElementSize(element);
         }
 
+        byte[] output = new byte[calcListHeaderSize(dataLength) + dataLength];
+        int pos = encodeListHeader(dataLength, output, 0);
+        for (byte[] element : elements) {
+            pos = encodeElement(element, output, pos);
+        }
         return output;
     }
 
@@ -1116,11 +1908,16 @@ public class RLP {
      * Encodes each data element and wraps them all into a list.
      */
     public static byte[] wrapList(byte[] ... data) {
-        byte[][] elements = new byte[data.length][];
-        for (int i = 0; i < data.length; i++) {
-            elements[i] = encodeElement(data[i]);
+        int totalLength = 0;
+        for (byte[] element : data) {
+            totalLength += calcElementSize(element);
         }
-        return encodeList(elements);
+        byte[] output = new byte[calcListHeaderSize(totalLength) + totalLength];
+        int pos = encodeListHeader(totalLength, output, 0);
+        for (byte[] element : data) {
+            pos = encodeElement(element, output, pos);
+        }
+        return output;
     }
 
     public static byte[] encodeList(byte[]... elements) {
@@ -0,0 +1,36 @@
+package com.thanos.common.utils.rlp;
+
+/**
+ * RLPCodec.java description：encoder/decoder of one type to and from a single
+ * RLP element. The exact encoded size is known before encoding, so callers
+ * allocate the output once and codecs write into it without intermediate arrays.
+ */
+public interface RLPCodec<T> {
+
+    /**
+     * @return exact number of bytes {@link #encode(Object, byte[], int)} writes for value
+     */
+    int calcEncodedSize(T value);
+
+    /**
+     * Writes the RLP element of value into dest
+     *
+     * @return position right after the written element
+     */
+    int encode(T value, byte[] dest, int destPos);
+
+    /**
+     * Decodes the element starting at pos
+     */
+    T decode(byte[] data, int pos);
+
+    default byte[] encode(T value) {
+        byte[] output = new byte[calcEncodedSize(value)];
+        encode(value, output, 0);
+        return output;
+    }
+
+    default T decode(byte[] data) {
+        return decode(data, 0);
+    }
+}
@@ -0,0 +1,55 @@
+package com.thanos.common.utils.rlp;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RLPCodecRegistry.java description：codecs looked up by the exact class of the
+ * value, built once at startup (usually from {@link RLPSchema}s) and shared.
+ * {@link #getDefault()} already knows byte[], String, Long, Integer and BigInteger.
+ */
+public class RLPCodecRegistry {
+
+    private static final RLPCodecRegistry DEFAULT = new RLPCodecRegistry();
+
+    private final ConcurrentHashMap<Class<?>, RLPCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    public RLPCodecRegistry() {
+        register(byte[].class, RLPCodecs.BYTES);
+        register(String.class, RLPCodecs.STRING);
+        register(Long.class, RLPCodecs.LONG);
+        register(Integer.class, RLPCodecs.INT);
+        register(BigInteger.class, RLPCodecs.BIG_INTEGER);
+    }
+
+    public static RLPCodecRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public <T> RLPCodecRegistry register(Class<T> type, RLPCodec<T> codec) {
+        codecs.put(type, codec);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> RLPCodec<T> get(Class<T> type) {
+        RLPCodec<T> codec = (RLPCodec<T>) codecs.get(type);
+        if (codec == null) {
+            throw new RuntimeException("No RLP codec registered for " + type.getName());
+        }
+        return codec;
+    }
+
+    public boolean contains(Class<?> type) {
+        return codecs.containsKey(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> byte[] encode(T value) {
+        return get((Class<T>) value.getClass()).encode(value);
+    }
+
+    public <T> T decode(Class<T> type, byte[] data) {
+        return get(type).decode(data, 0);
+    }
+}
@@ -0,0 +1,163 @@
+package com.thanos.common.utils.rlp;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.spongycastle.util.BigIntegers.asUnsignedByteArray;
+
+/**
+ * RLPCodecs.java description：codecs of the types RLP messages are built of,
+ * used as field codecs by {@link RLPSchema}. Numbers follow
+ * {@link RLP#encodeBigInteger(BigInteger)} and {@link RLP#decodeLong(byte[], int)}.
+ */
+public final class RLPCodecs {
+
+    public static final RLPCodec<byte[]> BYTES = new RLPCodec<byte[]>() {
+        @Override
+        public int calcEncodedSize(byte[] value) {
+            return RLP.calcElementSize(value);
+        }
+
+        @Override
+        public int encode(byte[] value, byte[] dest, int destPos) {
+            return RLP.encodeElement(value, dest, destPos);
+        }
+
+        @Override
+        public byte[] decode(byte[] data, int pos) {
+            return RLP.decodeBytes(data, pos);
+        }
+    };
+
+    // null is written as the empty item, like a null byte array, and read back as ""
+    public static final RLPCodec<String> STRING = new RLPCodec<String>() {
+        @Override
+        public int calcEncodedSize(String value) {
+            return value == null ? 1 : RLP.calcElementSize(value.getBytes());
+        }
+
+        @Override
+        public int encode(String value, byte[] dest, int destPos) {
+            return RLP.encodeElement(value == null ? null : value.getBytes(), dest, destPos);
+        }
+
+        @Override
+        public String decode(byte[] data, int pos) {
+            byte[] bytes = RLP.decodeBytes(data, pos);
+            return bytes.length == 0 ? "" : new String(bytes);
+        }
+    };
+
+    public static final RLPCodec<Long> LONG = new RLPCodec<Long>() {
+        @Override
+        public int calcEncodedSize(Long value) {
+            return RLP.calcLongSize(value);
+        }
+
+        @Override
+        public int encode(Long value, byte[] dest, int destPos) {
+            return RLP.encodeLong(value, dest, destPos);
+        }
+
+        @Override
+        public Long decode(byte[] data, int pos) {
+            return RLP.decodeLong(data, pos);
+        }
+    };
+
+    public static final RLPCodec<Integer> INT = new RLPCodec<Integer>() {
+        @Override
+        public int calcEncodedSize(Integer value) {
+            return RLP.calcLongSize(value);
+        }
+
+        @Override
+        public int encode(Integer value, byte[] dest, int destPos) {
+            return RLP.encodeLong(value, dest, destPos);
+        }
+
+        @Override
+        public Integer decode(byte[] data, int pos) {
+            return RLP.decodeInt(data, pos);
+        }
+    };
+
+    public static final RLPCodec<BigInteger> BIG_INTEGER = new RLPCodec<BigInteger>() {
+        @Override
+        public int calcEncodedSize(BigInteger value) {
+            if (value.signum() < 0) {
+                throw new RuntimeException("negative numbers are not allowed");
+            }
+            if (value.bitLength() < Long.SIZE) {
+                return RLP.calcLongSize(value.longValue());
+            }
+            int length = (value.bitLength() + 7) >>> 3;
+            return RLPWriter.calcHeaderSize(length) + length;
+        }
+
+        @Override
+        public int encode(BigInteger value, byte[] dest, int destPos) {
+            if (value.signum() < 0) {
+                throw new RuntimeException("negative numbers are not allowed");
+            }
+            if (value.bitLength() < Long.SIZE) {
+                return RLP.encodeLong(value.longValue(), dest, destPos);
+            }
+            return RLP.encodeElement(asUnsignedByteArray(value), dest, destPos);
+        }
+
+        @Override
+        public BigInteger decode(byte[] data, int pos) {
+            return RLP.decodeBigInteger(data, pos);
+        }
+    };
+
+    private RLPCodecs() {
+    }
+
+    /**
+     * @return codec of a list whose elements all use elementCodec
+     */
+    public static <E> RLPCodec<List<E>> listOf(RLPCodec<E> elementCodec) {
+        return new RLPCodec<List<E>>() {
+            @Override
+            public int calcEncodedSize(List<E> value) {
+                int payloadLength = payloadLength(value);
+                return RLP.calcListHeaderSize(payloadLength) + payloadLength;
+            }
+
+            @Override
+            public int encode(List<E> value, byte[] dest, int destPos) {
+                destPos = RLP.encodeListHeader(payloadLength(value), dest, destPos);
+                for (int i = 0; i < value.size(); i++) {
+                    destPos = elementCodec.encode(value.get(i), dest, destPos);
+                }
+                return destPos;
+            }
+
+            @Override
+            public List<E> decode(byte[] data, int pos) {
+                if (!RLP.isList(data, pos)) {
+                    throw new RuntimeException("RLP item found where a list was expected");
+                }
+                int elementPos = RLP.getPayloadOffset(data, pos);
+                int end = elementPos + RLP.getPayloadLength(data, pos);
+                List<E> result = new ArrayList<>();
+                while (elementPos < end) {
+                    result.add(elementCodec.decode(data, elementPos));
+                    elementPos = RLP.getNextElementIndex(data, elementPos);
+                }
+                return result;
+            }
+
+            private int payloadLength(List<E> value) {
+                int payloadLength = 0;
+                for (int i = 0; i < value.size(); i++) {
+                    payloadLength += elementCodec.calcEncodedSize(value.get(i));
+                }
+                return payloadLength;
+            }
+        };
+    }
+}
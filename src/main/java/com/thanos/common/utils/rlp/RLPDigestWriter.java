@@ -0,0 +1,98 @@
+package com.thanos.common.utils.rlp;
+
+import com.thanos.common.crypto.CryptoHash;
+import com.thanos.common.crypto.CryptoHashType;
+
+import java.util.function.Consumer;
+
+/**
+ * RLPDigestWriter.java description：{@link RLPWriter} feeding the encoding straight
+ * into a {@link CryptoHash}, so the hash of a header or transaction is computed
+ * without ever allocating its encoding. List prefixes are written from declared
+ * or counted sizes ({@link #startList(long)}, {@link #writeList(Consumer)}),
+ * nothing needs to be back-patched.
+ * <pre>
+ *     byte[] hash = RLPDigestWriter.sha3(w -&gt; w.writeLong(number).writeBytes(parentHash).writeBytes(stateRoot));
+ * </pre>
+ * Not thread safe.
+ */
+public class RLPDigestWriter extends RLPWriter {
+
+    private static final ThreadLocal<RLPDigestWriter> LOCAL_KECCAK_256 =
+            ThreadLocal.withInitial(() -> new RLPDigestWriter(CryptoHashType.KECCAK_256.newEngine()));
+
+    private final CryptoHash hash;
+
+    private boolean inUse;
+
+    public RLPDigestWriter(CryptoHash hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return keccak-256 of the list whose elements are written by body, same as
+     * {@code HashUtil.sha3(RLP.encodeList(...))} of those elements
+     */
+    public static byte[] sha3(Consumer<RLPWriter> body) {
+        RLPDigestWriter writer = LOCAL_KECCAK_256.get();
+        if (writer.inUse) {
+            // body hashes a nested structure itself
+            writer = new RLPDigestWriter(CryptoHashType.KECCAK_256.newEngine());
+        } else {
+            writer.reset();
+        }
+        writer.inUse = true;
+        try {
+            writer.writeList(body);
+            return writer.digest();
+        } finally {
+            writer.inUse = false;
+        }
+    }
+
+    /**
+     * Finishes the hash of everything written, and resets the writer
+     */
+    public byte[] digest() {
+        checkComplete();
+        byte[] result = hash.digest();
+        resetWriter();
+        return result;
+    }
+
+    /**
+     * Allocation free {@link #digest()}, the hash is written at outOffset in out
+     *
+     * @return number of bytes written
+     */
+    public int digest(byte[] out, int outOffset) {
+        checkComplete();
+        int length = hash.digest(out, outOffset);
+        resetWriter();
+        return length;
+    }
+
+    /**
+     * Drops what was written, e.g. after a failed encoding
+     */
+    public void reset() {
+        hash.reset();
+        resetWriter();
+    }
+
+    @Override
+    protected void writeRaw(byte[] src, int offset, int length) {
+        hash.update(src, offset, length);
+    }
+
+    @Override
+    protected void writeRaw(int b) {
+        hash.update((byte) b);
+    }
+
+    private void checkComplete() {
+        if (getDepth() != 0) {
+            throw new RuntimeException(String.format("RLP message has %s open lists", getDepth()));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.thanos.common.utils.rlp;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * RLPEncodeContext.java description：reusable in-memory {@link RLPWriter} backed by a
+ * growable scratch buffer. Prefixes and elements are written straight into the
+ * buffer, so once it has grown to the usual message size the only allocation
+ * left is the final {@link #toByteArray()} (or none with {@link #copyTo(byte[], int)}).
+ * <p>
+ * Besides lists of declared size, {@link #startList()} opens a list whose size is
+ * unknown: one prefix byte is reserved and patched by {@link #endList()}, the
+ * payload being shifted when the prefix turns out longer. {@link #writeList(Consumer)}
+ * uses that, so the list body runs once.
+ * <p>
+ * Either create and pass a context explicitly or borrow the thread's one:
+ * <pre>
+ *     try (RLPEncodeContext ctx = RLPEncodeContext.local()) {
+ *         ctx.startList().writeLong(nonce).writeBytes(hash).endList();
+ *         return ctx.toByteArray();
+ *     }
+ * </pre>
+ * Not thread safe.
+ */
+public class RLPEncodeContext extends RLPWriter implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // a thread keeps a bigger buffer only until the next reset
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private static final ThreadLocal<RLPEncodeContext> LOCAL = ThreadLocal.withInitial(RLPEncodeContext::new);
+
+    private byte[] buffer;
+
+    private int size;
+
+    // position of the reserved prefix byte of every open unsized list, -1 for declared lists
+    private final int[] listMarks = new int[RLP.MAX_DEPTH];
+
+    private int listCount;
+
+    private boolean inUse;
+
+    public RLPEncodeContext() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public RLPEncodeContext(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * @return the reset context of the current thread, or a new one if the thread's
+     * context is already borrowed (nested encoding); close it to give it back
+     */
+    public static RLPEncodeContext local() {
+        RLPEncodeContext context = LOCAL.get();
+        if (context.inUse) {
+            context = new RLPEncodeContext();
+        } else {
+            context.reset();
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    /**
+     * Opens a list of unknown size, must be closed by {@link #endList()}
+     */
+    public RLPEncodeContext startList() {
+        if (listCount == RLP.MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", RLP.MAX_DEPTH));
+        }
+        if (getDepth() > 0) {
+            throw new RuntimeException("List of unknown size can't be nested in a list of declared size");
+        }
+        ensureCapacity(1);
+        listMarks[listCount++] = size++;
+        return this;
+    }
+
+    @Override
+    public RLPWriter startList(long payloadLength) {
+        if (listCount == RLP.MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", RLP.MAX_DEPTH));
+        }
+        super.startList(payloadLength);
+        listMarks[listCount++] = -1;
+        return this;
+    }
+
+    @Override
+    public RLPWriter endList() {
+        if (listCount == 0) {
+            throw new RuntimeException("No RLP list to end");
+        }
+        int mark = listMarks[--listCount];
+        if (mark < 0) {
+            return super.endList();
+        }
+
+        int payloadLength = size - mark - 1;
+        int headerLength = RLP.calcListHeaderSize(payloadLength);
+        if (headerLength > 1) {
+            ensureCapacity(headerLength - 1);
+            System.arraycopy(buffer, mark + 1, buffer, mark + headerLength, payloadLength);
+            size += headerLength - 1;
+        }
+        RLP.encodeListHeader(payloadLength, buffer, mark);
+        return this;
+    }
+
+    /**
+     * Single pass: the prefix is back-patched once body is done
+     */
+    @Override
+    public RLPWriter writeList(Consumer<RLPWriter> body) {
+        if (getDepth() > 0) {
+            return super.writeList(body);
+        }
+        startList();
+        body.accept(this);
+        return endList();
+    }
+
+    /**
+     * Writes input as {@link RLP#encode(Object)} would, without intermediate arrays
+     */
+    public RLPEncodeContext writeObject(Object input) {
+        RLP.EncodePlan plan = new RLP.EncodePlan(input);
+        ensureCapacity(plan.size());
+        // account the bytes as written, they are encoded in place
+        skipRaw(plan.size());
+        size = plan.write(buffer, size);
+        return this;
+    }
+
+    /**
+     * @return number of bytes encoded so far, list prefixes included
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the encoded bytes, the message must be complete
+     */
+    public byte[] toByteArray() {
+        checkComplete();
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Copies the encoded bytes into dest, e.g. right into a bigger message
+     *
+     * @return position right after the copied bytes
+     */
+    public int copyTo(byte[] dest, int destPos) {
+        checkComplete();
+        System.arraycopy(buffer, 0, dest, destPos, size);
+        return destPos + size;
+    }
+
+    /**
+     * Empties the context, the scratch buffer is kept unless it grew too big
+     */
+    public void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        size = 0;
+        listCount = 0;
+        resetWriter();
+    }
+
+    /**
+     * Gives a context borrowed by {@link #local()} back to its thread
+     */
+    @Override
+    public void close() {
+        inUse = false;
+    }
+
+    @Override
+    protected void writeRaw(byte[] src, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, buffer, size, length);
+        size += length;
+    }
+
+    @Override
+    protected void writeRaw(int b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void checkComplete() {
+        if (listCount != 0) {
+            throw new RuntimeException(String.format("RLP message has %s open lists", listCount));
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = size + extra;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.thanos.common.utils.rlp;
+
+import com.thanos.common.utils.ByteUtil;
+
+/**
+ * RLPItemSlice.java description：zero-copy counterpart of {@link RLPItem},
+ * the slice covers the item payload (without the RLP prefix).
+ */
+public class RLPItemSlice implements RLPSlice {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] data;
+
+    private final int offset;
+
+    private final int length;
+
+    private transient byte[] rlpData;
+
+    public RLPItemSlice(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public byte[] getRLPData() {
+        if (length == 0)
+            return null;
+        if (rlpData == null) {
+            byte[] copy = new byte[length];
+            System.arraycopy(data, offset, copy, 0, length);
+            rlpData = copy;
+        }
+        return rlpData;
+    }
+
+    @Override
+    public byte[] getBackingArray() {
+        return data;
+    }
+
+    @Override
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void copyTo(byte[] dest, int destPos) {
+        System.arraycopy(data, offset, dest, destPos, length);
+    }
+
+    /**
+     * @return the payload as an unsigned big endian number, only the lowest
+     * 8 bytes are kept as {@link ByteUtil#byteArrayToLong(byte[])} does
+     */
+    public long getLong() {
+        return ByteUtil.byteArrayToLong(data, offset, length);
+    }
+
+    public int getInt() {
+        return (int) ByteUtil.byteArrayToLong(data, offset, length);
+    }
+
+    /**
+     * @param value holder of 4 longs, least significant first, overwritten
+     * @return value
+     */
+    public long[] getUInt256(long[] value) {
+        return RLP.decodeUInt256Payload(data, offset, length, value);
+    }
+
+    /**
+     * Serialize as a plain item, otherwise the whole backing message would be written
+     */
+    private Object writeReplace() {
+        byte[] rlp = getRLPData();
+        return new RLPItem(rlp == null ? ByteUtil.EMPTY_BYTE_ARRAY : rlp);
+    }
+}
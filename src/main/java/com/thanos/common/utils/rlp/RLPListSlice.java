@@ -0,0 +1,65 @@
+package com.thanos.common.utils.rlp;
+
+/**
+ * RLPListSlice.java description：zero-copy counterpart of {@link RLPList},
+ * the slice covers the whole list encoding (prefix and payload), which is what
+ * {@link RLPList#getRLPData()} returns. Being an {@link RLPList} it can be used
+ * everywhere a decoded list is expected.
+ */
+public class RLPListSlice extends RLPList implements RLPSlice {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient byte[] data;
+
+    private final transient int offset;
+
+    private final transient int length;
+
+    public RLPListSlice(byte[] data, int offset, int length, int capacity) {
+        super(capacity);
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public byte[] getRLPData() {
+        if (rlpData == null) {
+            byte[] copy = new byte[length];
+            System.arraycopy(data, offset, copy, 0, length);
+            rlpData = copy;
+        }
+        return rlpData;
+    }
+
+    @Override
+    public byte[] getBackingArray() {
+        return data;
+    }
+
+    @Override
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void copyTo(byte[] dest, int destPos) {
+        System.arraycopy(data, offset, dest, destPos, length);
+    }
+
+    /**
+     * Serialize as a plain list, otherwise the whole backing message would be written
+     */
+    private Object writeReplace() {
+        RLPList list = new RLPList(size());
+        list.addAll(this);
+        list.setRLPData(getRLPData());
+        return list;
+    }
+}
@@ -0,0 +1,132 @@
+package com.thanos.common.utils.rlp;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RLPParallelDecoder.java description：decodes the elements of a long RLP list on
+ * a ForkJoinPool. The list is first indexed in a single cheap pass by
+ * {@link RLP#decodeLazyList(byte[])}, then element ranges are split in halves
+ * until at most splitThreshold elements are left, and each range is decoded
+ * or mapped on its own worker.
+ * <p>
+ * Elements must be independent, results keep the order of the list.
+ */
+public class RLPParallelDecoder {
+
+    public static final int DEFAULT_SPLIT_THRESHOLD = 32;
+
+    private final ForkJoinPool pool;
+
+    private final int splitThreshold;
+
+    public RLPParallelDecoder() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public RLPParallelDecoder(int splitThreshold) {
+        this(ForkJoinPool.commonPool(), splitThreshold);
+    }
+
+    public RLPParallelDecoder(ForkJoinPool pool, int splitThreshold) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("split threshold must be positive");
+        }
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * Maps one list element, given as the range of its encoding (prefix included)
+     */
+    public interface ElementMapper<T> {
+
+        T map(byte[] data, int offset, int length);
+    }
+
+    /**
+     * Same result as the list returned by {@code RLP.decode2(msgData).get(0)}
+     *
+     * @param msgData encoding of a list
+     */
+    public RLPList decodeList(byte[] msgData) {
+        RLP.LList index = RLP.decodeLazyList(msgData);
+        List<RLPElement> elements = map(index, RLPParallelDecoder::decodeElement);
+        RLPList result = new RLPList(elements.size());
+        result.addAll(elements);
+        result.setRLPData(index.getEncoded());
+        return result;
+    }
+
+    /**
+     * Applies mapper to every element of the encoded list msgData
+     */
+    public <T> List<T> map(byte[] msgData, ElementMapper<T> mapper) {
+        return map(RLP.decodeLazyList(msgData), mapper);
+    }
+
+    /**
+     * Applies mapper to every element of an already indexed list,
+     * so a nested list can be processed without indexing its parents again
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> map(RLP.LList list, ElementMapper<T> mapper) {
+        Object[] results = new Object[list.size()];
+        if (list.size() <= splitThreshold) {
+            mapRange(list, mapper, results, 0, list.size());
+        } else {
+            pool.invoke(new MapTask<>(list, mapper, results, 0, list.size()));
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    private static RLPElement decodeElement(byte[] data, int offset, int length) {
+        RLPList holder = new RLPList(1);
+        // level 1: the element sits in the top level list
+        RLP.fullTraverse(data, 1, offset, offset + length, holder, Integer.MAX_VALUE);
+        return holder.get(0);
+    }
+
+    private static <T> void mapRange(RLP.LList list, ElementMapper<T> mapper, Object[] results, int from, int to) {
+        byte[] data = list.getRLP();
+        for (int i = from; i < to; i++) {
+            results[i] = mapper.map(data, list.getEncodedOffset(i), list.getEncodedLength(i));
+        }
+    }
+
+    private class MapTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RLP.LList list;
+
+        private final ElementMapper<T> mapper;
+
+        private final Object[] results;
+
+        private final int from;
+
+        private final int to;
+
+        MapTask(RLP.LList list, ElementMapper<T> mapper, Object[] results, int from, int to) {
+            this.list = list;
+            this.mapper = mapper;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= splitThreshold) {
+                mapRange(list, mapper, results, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MapTask<>(list, mapper, results, from, mid),
+                    new MapTask<>(list, mapper, results, mid, to));
+        }
+    }
+}
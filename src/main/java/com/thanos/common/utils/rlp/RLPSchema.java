@@ -0,0 +1,188 @@
+package com.thanos.common.utils.rlp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * RLPSchema.java description：codec of a domain object encoded as an RLP list of
+ * its fields, in declaration order. Fields are bound with getter/setter method
+ * references when the schema is built, so encoding and decoding are plain calls
+ * without reflection, and long/int fields are never boxed.
+ * <p>
+ * <pre>
+ *     static final RLPSchema&lt;Vote&gt; SCHEMA = RLPSchema.builder(Vote::new)
+ *             .longField(Vote::getEpoch, Vote::setEpoch)
+ *             .bytesField(Vote::getHash, Vote::setHash)
+ *             .field(RLPCodecs.listOf(RLPCodecs.BYTES), Vote::getSigners, Vote::setSigners)
+ *             .build();
+ * </pre>
+ * A schema is immutable and thread safe, register it in {@link RLPCodecRegistry}
+ * or use it as the field codec of another schema.
+ */
+public final class RLPSchema<T> implements RLPCodec<T> {
+
+    private final Supplier<T> factory;
+
+    private final FieldCodec<T>[] fields;
+
+    private RLPSchema(Supplier<T> factory, FieldCodec<T>[] fields) {
+        this.factory = factory;
+        this.fields = fields;
+    }
+
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    @Override
+    public int calcEncodedSize(T value) {
+        int payloadLength = payloadLength(value);
+        return RLP.calcListHeaderSize(payloadLength) + payloadLength;
+    }
+
+    @Override
+    public int encode(T value, byte[] dest, int destPos) {
+        destPos = RLP.encodeListHeader(payloadLength(value), dest, destPos);
+        for (FieldCodec<T> field : fields) {
+            destPos = field.encode(value, dest, destPos);
+        }
+        return destPos;
+    }
+
+    @Override
+    public T decode(byte[] data, int pos) {
+        if (!RLP.isList(data, pos)) {
+            throw new RuntimeException("RLP item found where a list was expected");
+        }
+        int fieldPos = RLP.getPayloadOffset(data, pos);
+        int end = fieldPos + RLP.getPayloadLength(data, pos);
+
+        T value = factory.get();
+        for (int i = 0; i < fields.length; i++) {
+            if (fieldPos >= end) {
+                throw new RuntimeException(String.format("RLP list has %s elements, %s expected", i, fields.length));
+            }
+            fields[i].decode(value, data, fieldPos);
+            fieldPos = RLP.getNextElementIndex(data, fieldPos);
+        }
+        if (fieldPos != end) {
+            throw new RuntimeException(String.format("RLP list has more than the %s expected elements", fields.length));
+        }
+        return value;
+    }
+
+    /**
+     * @return number of fields, i.e. elements of the encoded list
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    private int payloadLength(T value) {
+        int payloadLength = 0;
+        for (FieldCodec<T> field : fields) {
+            payloadLength += field.calcEncodedSize(value);
+        }
+        return payloadLength;
+    }
+
+    private interface FieldCodec<T> {
+
+        int calcEncodedSize(T owner);
+
+        int encode(T owner, byte[] dest, int destPos);
+
+        void decode(T owner, byte[] data, int pos);
+    }
+
+    public static final class Builder<T> {
+
+        private final Supplier<T> factory;
+
+        private final List<FieldCodec<T>> fields = new ArrayList<>();
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        public Builder<T> longField(ToLongFunction<T> getter, ObjLongConsumer<T> setter) {
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public int calcEncodedSize(T owner) {
+                    return RLP.calcLongSize(getter.applyAsLong(owner));
+                }
+
+                @Override
+                public int encode(T owner, byte[] dest, int destPos) {
+                    return RLP.encodeLong(getter.applyAsLong(owner), dest, destPos);
+                }
+
+                @Override
+                public void decode(T owner, byte[] data, int pos) {
+                    setter.accept(owner, RLP.decodeLong(data, pos));
+                }
+            });
+            return this;
+        }
+
+        public Builder<T> intField(ToIntFunction<T> getter, ObjIntConsumer<T> setter) {
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public int calcEncodedSize(T owner) {
+                    return RLP.calcLongSize(getter.applyAsInt(owner));
+                }
+
+                @Override
+                public int encode(T owner, byte[] dest, int destPos) {
+                    return RLP.encodeLong(getter.applyAsInt(owner), dest, destPos);
+                }
+
+                @Override
+                public void decode(T owner, byte[] data, int pos) {
+                    setter.accept(owner, RLP.decodeInt(data, pos));
+                }
+            });
+            return this;
+        }
+
+        public Builder<T> bytesField(Function<T, byte[]> getter, BiConsumer<T, byte[]> setter) {
+            return field(RLPCodecs.BYTES, getter, setter);
+        }
+
+        /**
+         * Binds a field of any type having a codec, nested schemas included
+         */
+        public <F> Builder<T> field(RLPCodec<F> codec, Function<T, F> getter, BiConsumer<T, F> setter) {
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public int calcEncodedSize(T owner) {
+                    return codec.calcEncodedSize(getter.apply(owner));
+                }
+
+                @Override
+                public int encode(T owner, byte[] dest, int destPos) {
+                    return codec.encode(getter.apply(owner), dest, destPos);
+                }
+
+                @Override
+                public void decode(T owner, byte[] data, int pos) {
+                    setter.accept(owner, codec.decode(data, pos));
+                }
+            });
+            return this;
+        }
+
+        public RLPSchema<T> build() {
+            @SuppressWarnings("unchecked")
+            FieldCodec<T>[] array = (FieldCodec<T>[]) new FieldCodec<?>[fields.size()];
+            return new RLPSchema<>(factory, fields.toArray(array));
+        }
+    }
+}
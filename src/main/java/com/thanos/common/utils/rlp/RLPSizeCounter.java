@@ -0,0 +1,31 @@
+package com.thanos.common.utils.rlp;
+
+import java.util.function.Consumer;
+
+/**
+ * RLPSizeCounter.java description：{@link RLPWriter} which discards the output and
+ * only counts it, it is the first pass of {@link RLPWriter#writeList(Consumer)}
+ * and can be used to size a buffer before encoding.
+ */
+public class RLPSizeCounter extends RLPWriter {
+
+    @Override
+    protected void writeRaw(byte[] src, int offset, int length) {
+    }
+
+    @Override
+    protected void writeRaw(int b) {
+    }
+
+    /**
+     * Runs body once, nested lists are counted by their own counter
+     */
+    @Override
+    public RLPWriter writeList(Consumer<RLPWriter> body) {
+        RLPSizeCounter payload = new RLPSizeCounter();
+        body.accept(payload);
+        startList(payload.getBytesWritten());
+        skipRaw(payload.getBytesWritten());
+        return endList();
+    }
+}
@@ -0,0 +1,30 @@
+package com.thanos.common.utils.rlp;
+
+/**
+ * RLPSlice.java description：a decoded RLP element that is only a view
+ * (backing array, offset, length) over the original message. The bytes are
+ * copied only when {@link #getRLPData()} is called.
+ */
+public interface RLPSlice extends RLPElement {
+
+    /**
+     * @return the array the slice points into, never copied
+     */
+    byte[] getBackingArray();
+
+    /**
+     * @return start of the slice in {@link #getBackingArray()}
+     */
+    int getOffset();
+
+    /**
+     * @return number of bytes covered by the slice, i.e. the length
+     * {@link #getRLPData()} would have
+     */
+    int getLength();
+
+    /**
+     * Copies the slice into dest without any intermediate array
+     */
+    void copyTo(byte[] dest, int destPos);
+}
@@ -0,0 +1,448 @@
+package com.thanos.common.utils.rlp;
+
+import com.thanos.common.utils.ByteUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static com.thanos.common.utils.rlp.RLP.*;
+
+/**
+ * RLPStreamReader.java description：pull style RLP decoder over a stream or channel.
+ * Only a bounded buffer of the input is kept in memory, so a message can be
+ * decoded while it is still arriving. Same checks as {@link RLP#decode2(byte[])}
+ * are applied element by element: max depth, canonical prefixes and that each
+ * element fits in the list that holds it.
+ * <p>
+ * Items are read into arrays of their declared size, which a peer chooses, so
+ * items (and {@link #readEncoded()} elements) bigger than the max element size
+ * are rejected from their header, before anything is allocated. Lists are not
+ * bounded, their elements are read one by one.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     reader.enterList();
+ *     long nonce = reader.readLong();
+ *     byte[] data = reader.readBytes();
+ *     reader.exitList();
+ * </pre>
+ * Not thread safe.
+ */
+public class RLPStreamReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    public static final int DEFAULT_MAX_ELEMENT_SIZE = 32 << 20;
+
+    // prefix byte and up to 8 bytes of length must fit in the buffer
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private final ReadableByteChannel channel;
+
+    // kept in read mode, unread bytes are [position, limit)
+    private final ByteBuffer buffer;
+
+    private final int maxElementSize;
+
+    private boolean eof;
+
+    // number of bytes consumed from the stream so far
+    private long position;
+
+    // absolute end position of every list entered
+    private final long[] listEnds = new long[MAX_DEPTH];
+
+    private int depth;
+
+    // header of the next element, valid while headerRead is true
+    private boolean headerRead;
+
+    private boolean nextIsList;
+
+    private int headerSize;
+
+    private long payloadSize;
+
+    public RLPStreamReader(InputStream in) {
+        this(Channels.newChannel(in), DEFAULT_BUFFER_SIZE);
+    }
+
+    public RLPStreamReader(InputStream in, int bufferSize) {
+        this(Channels.newChannel(in), bufferSize);
+    }
+
+    public RLPStreamReader(InputStream in, int bufferSize, int maxElementSize) {
+        this(Channels.newChannel(in), bufferSize, maxElementSize);
+    }
+
+    public RLPStreamReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public RLPStreamReader(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, DEFAULT_MAX_ELEMENT_SIZE);
+    }
+
+    /**
+     * @param maxElementSize max size in bytes of an item payload, or of a whole
+     *                       element read by {@link #readEncoded()}
+     */
+    public RLPStreamReader(ReadableByteChannel channel, int bufferSize, int maxElementSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer size must be at least " + MIN_BUFFER_SIZE);
+        }
+        if (maxElementSize < 1) {
+            throw new IllegalArgumentException("max element size must be positive");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+        this.maxElementSize = maxElementSize;
+    }
+
+    /**
+     * @return true if there is another element in the current list,
+     * or in the stream when no list has been entered
+     */
+    public boolean hasNext() {
+        if (depth > 0) {
+            return position < listEnds[depth - 1];
+        }
+        return buffer.hasRemaining() || fill(1);
+    }
+
+    /**
+     * @return true if the next element is a list
+     */
+    public boolean isNextList() {
+        readHeader();
+        return nextIsList;
+    }
+
+    /**
+     * Steps into the next element, which must be a list
+     *
+     * @return the payload length of the list
+     */
+    public long enterList() {
+        readHeader();
+        if (!nextIsList) {
+            throw new RuntimeException("RLP item found where a list was expected");
+        }
+        if (depth == MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", MAX_DEPTH));
+        }
+        consume(headerSize);
+        listEnds[depth++] = position + payloadSize;
+        headerRead = false;
+        return payloadSize;
+    }
+
+    /**
+     * Skips whatever is left of the current list and steps out of it
+     */
+    public void exitList() {
+        if (depth == 0) {
+            throw new RuntimeException("Not inside an RLP list");
+        }
+        skipBytes(listEnds[depth - 1] - position);
+        depth--;
+        headerRead = false;
+    }
+
+    /**
+     * Skips the next element, item or list, without decoding it
+     */
+    public void skip() {
+        readHeader();
+        skipBytes(headerSize + payloadSize);
+        headerRead = false;
+    }
+
+    /**
+     * @return payload of the next item, an empty array for the null item
+     */
+    public byte[] readBytes() {
+        readItemHeader();
+        byte[] item = payloadSize == 0 ? ByteUtil.EMPTY_BYTE_ARRAY : new byte[(int) payloadSize];
+        consume(headerSize);
+        readFully(item, 0, item.length);
+        headerRead = false;
+        return item;
+    }
+
+    public String readString() {
+        byte[] item = readBytes();
+        return item.length == 0 ? "" : new String(item);
+    }
+
+    /**
+     * Same rules as {@link RLP#decodeLong(byte[], int)}
+     */
+    public long readLong() {
+        return readNumber(Long.BYTES);
+    }
+
+    /**
+     * Same rules as {@link RLP#decodeInt(byte[], int)}
+     */
+    public int readInt() {
+        return (int) readNumber(Integer.BYTES);
+    }
+
+    public BigInteger readBigInteger() {
+        byte[] item = readBytes();
+        return item.length == 0 ? BigInteger.ZERO : new BigInteger(1, item);
+    }
+
+    /**
+     * @return the complete encoding (prefix included) of the next element, so a
+     * small sub structure can be handed to {@link RLP#decode2(byte[])}
+     */
+    public byte[] readEncoded() {
+        readHeader();
+        verifyElementSize(headerSize + payloadSize);
+        byte[] encoded = new byte[(int) (headerSize + payloadSize)];
+        readFully(encoded, 0, encoded.length);
+        headerRead = false;
+        return encoded;
+    }
+
+    /**
+     * @return number of bytes consumed from the underlying stream
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return number of lists currently entered
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close RLP stream", e);
+        }
+    }
+
+    private long readNumber(int maxBytes) {
+        readItemHeader();
+        int prefix = buffer.get(buffer.position()) & 0xFF;
+        if (prefix == 0) {
+            throw new RuntimeException("not a number");
+        }
+        if (payloadSize > maxBytes) {
+            throw new RuntimeException("wrong decode attempt");
+        }
+
+        long value;
+        if (headerSize == 0) {
+            // single byte, keep the sign as RLP.decodeLong does
+            value = buffer.get(buffer.position());
+            consume(1);
+        } else {
+            int length = (int) payloadSize;
+            ensure(1 + length);
+            consume(1);
+            value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (buffer.get() & 0xFF);
+            }
+            position += length;
+        }
+        headerRead = false;
+        return value;
+    }
+
+    private void readItemHeader() {
+        readHeader();
+        if (nextIsList) {
+            throw new RuntimeException("wrong decode attempt");
+        }
+    }
+
+    /**
+     * Parses the prefix of the next element without consuming it, the whole
+     * header is in the buffer afterwards
+     */
+    private void readHeader() {
+        if (headerRead) {
+            return;
+        }
+        if (!hasNext()) {
+            throw new RuntimeException("No more RLP elements to read");
+        }
+
+        ensure(1);
+        int pos = buffer.position();
+        int prefix = buffer.get(pos) & 0xFF;
+
+        if (prefix >= OFFSET_SHORT_LIST) {
+            nextIsList = true;
+            if (prefix > OFFSET_LONG_LIST) {
+                headerSize = 1 + prefix - OFFSET_LONG_LIST;
+                payloadSize = readLength(headerSize - 1);
+                if (payloadSize < SIZE_THRESHOLD) {
+                    throw new RuntimeException("Short list has been encoded as long list");
+                }
+            } else {
+                headerSize = 1;
+                payloadSize = prefix - OFFSET_SHORT_LIST;
+            }
+        } else if (prefix > OFFSET_LONG_ITEM) {
+            nextIsList = false;
+            headerSize = 1 + prefix - OFFSET_LONG_ITEM;
+            payloadSize = readLength(headerSize - 1);
+            if (payloadSize < SIZE_THRESHOLD) {
+                throw new RuntimeException("Short item has been encoded as long item");
+            }
+        } else if (prefix >= OFFSET_SHORT_ITEM) {
+            nextIsList = false;
+            headerSize = 1;
+            payloadSize = prefix - OFFSET_SHORT_ITEM;
+            if (payloadSize == 1) {
+                ensure(2);
+                if ((buffer.get(buffer.position() + 1) & 0xFF) < OFFSET_SHORT_ITEM) {
+                    throw new RuntimeException("Single byte has been encoded as byte string");
+                }
+            }
+        } else {
+            // single byte item is its own encoding
+            nextIsList = false;
+            headerSize = 0;
+            payloadSize = 1;
+        }
+
+        // check that the element is in the bounds of the enclosing list
+        if (depth > 0) {
+            verifyLength(headerSize + payloadSize, listEnds[depth - 1] - position);
+        }
+        // a list is not read at once, the items it holds are checked one by one
+        if (!nextIsList) {
+            verifyElementSize(payloadSize);
+        }
+        headerRead = true;
+    }
+
+    private long readLength(int lengthOfLength) {
+        ensure(1 + lengthOfLength);
+        int pos = buffer.position() + 1;
+        long length = 0;
+        for (int i = 0; i < lengthOfLength; i++) {
+            int bt = buffer.get(pos + i) & 0xFF;
+            // no leading zeros are acceptable
+            if (bt == 0 && length == 0) {
+                throw new RuntimeException("RLP length contains leading zeros");
+            }
+            length = (length << 8) | bt;
+        }
+        if (length < 0) {
+            throw new RuntimeException("RLP length is out of range");
+        }
+        return length;
+    }
+
+    private static void verifyLength(long suppliedLength, long availableLength) {
+        if (suppliedLength > availableLength) {
+            throw new RuntimeException(String.format("Length parsed from RLP (%s bytes) is greater " +
+                    "than possible size of data (%s bytes)", suppliedLength, availableLength));
+        }
+    }
+
+    private void verifyElementSize(long size) {
+        if (size > maxElementSize) {
+            throw new RuntimeException(String.format("RLP element of %s bytes exceeds the max element size (%s bytes)",
+                    size, maxElementSize));
+        }
+    }
+
+    private void consume(int n) {
+        buffer.position(buffer.position() + n);
+        position += n;
+    }
+
+    private void readFully(byte[] dest, int destPos, int length) {
+        int buffered = Math.min(buffer.remaining(), length);
+        buffer.get(dest, destPos, buffered);
+        position += buffered;
+        destPos += buffered;
+        length -= buffered;
+
+        // buffer is drained, big payloads are read straight into the destination
+        if (length > 0) {
+            ByteBuffer target = ByteBuffer.wrap(dest, destPos, length);
+            while (target.hasRemaining()) {
+                if (read(target) < 0) {
+                    throw unexpectedEnd();
+                }
+            }
+            position += length;
+        }
+    }
+
+    private void skipBytes(long n) {
+        while (n > 0) {
+            if (!buffer.hasRemaining() && !fill(1)) {
+                throw unexpectedEnd();
+            }
+            int step = (int) Math.min(buffer.remaining(), n);
+            consume(step);
+            n -= step;
+        }
+    }
+
+    private void ensure(int n) {
+        if (buffer.remaining() < n && !fill(n)) {
+            throw unexpectedEnd();
+        }
+    }
+
+    /**
+     * Reads from the channel until at least n bytes are buffered
+     *
+     * @return false if the stream ended before that
+     */
+    private boolean fill(int n) {
+        if (buffer.remaining() >= n) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < n) {
+                if (read(buffer) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+        return buffer.remaining() >= n;
+    }
+
+    private int read(ByteBuffer target) {
+        try {
+            return channel.read(target);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read RLP stream", e);
+        }
+    }
+
+    private RuntimeException unexpectedEnd() {
+        return new RuntimeException("RLP stream ended unexpectedly at position " + position);
+    }
+}
@@ -0,0 +1,121 @@
+package com.thanos.common.utils.rlp;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * RLPStreamWriter.java description：{@link RLPWriter} emitting to an output stream
+ * or channel through a bounded buffer, heap usage does not depend on the size
+ * of the output. Elements bigger than the buffer are written straight through.
+ * <p>
+ * Counterpart of {@link RLPStreamReader}. Not thread safe.
+ */
+public class RLPStreamWriter extends RLPWriter implements Flushable, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel;
+
+    // kept in write mode
+    private final ByteBuffer buffer;
+
+    public RLPStreamWriter(OutputStream out) {
+        this(Channels.newChannel(out), DEFAULT_BUFFER_SIZE);
+    }
+
+    public RLPStreamWriter(OutputStream out, int bufferSize) {
+        this(Channels.newChannel(out), bufferSize);
+    }
+
+    public RLPStreamWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public RLPStreamWriter(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    @Override
+    protected void writeRaw(byte[] src, int offset, int length) {
+        if (length <= buffer.remaining()) {
+            buffer.put(src, offset, length);
+            return;
+        }
+        drain();
+        if (length < buffer.capacity()) {
+            buffer.put(src, offset, length);
+        } else {
+            writeFully(ByteBuffer.wrap(src, offset, length));
+        }
+    }
+
+    @Override
+    protected void writeRaw(int b) {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    /**
+     * Pushes buffered bytes to the channel, lists may still be open
+     */
+    @Override
+    public void flush() {
+        drain();
+        if (channel instanceof Flushable) {
+            try {
+                ((Flushable) channel).flush();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to flush RLP stream", e);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the channel, all lists must have been ended
+     */
+    @Override
+    public void close() {
+        if (getDepth() != 0) {
+            throw new RuntimeException(String.format("Closing RLP stream with %s open lists", getDepth()));
+        }
+        try {
+            drain();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close RLP stream", e);
+            }
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            writeFully(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer src) {
+        try {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write RLP stream", e);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.thanos.common.utils.rlp;
+
+import java.math.BigInteger;
+import java.util.function.Consumer;
+
+import static com.thanos.common.utils.rlp.RLP.*;
+import static org.spongycastle.util.BigIntegers.asUnsignedByteArray;
+
+/**
+ * RLPWriter.java description：incremental RLP encoder, elements are handed to
+ * {@link #writeRaw(byte[], int, int)} as soon as they are written, so nothing
+ * has to be materialized before the list prefix is known.
+ * <p>
+ * A list prefix contains the payload length, it is either declared up front with
+ * {@link #startList(long)} and checked against what is actually written before
+ * {@link #endList()}, or computed by {@link #writeList(Consumer)} which runs the
+ * list body once over an {@link RLPSizeCounter} first (size-then-write).
+ * <p>
+ * Numbers are encoded as {@link RLP#encodeBigInteger(BigInteger)} does: big endian
+ * without leading zeroes, zero being the empty item. Not thread safe.
+ */
+public abstract class RLPWriter {
+
+    // absolute end position of every open list
+    private final long[] listEnds = new long[MAX_DEPTH];
+
+    private int depth;
+
+    private long written;
+
+    // prefix byte and up to 8 bytes of length
+    private final byte[] header = new byte[9];
+
+    private final byte[] uint256 = new byte[33];
+
+    /**
+     * Receives the encoded bytes in order
+     */
+    protected abstract void writeRaw(byte[] src, int offset, int length);
+
+    protected abstract void writeRaw(int b);
+
+    public RLPWriter writeBytes(byte[] data) {
+        return data == null ? writeBytes(null, 0, 0) : writeBytes(data, 0, data.length);
+    }
+
+    /**
+     * Same output as {@link RLP#encodeElement(byte[])} for the given range
+     */
+    public RLPWriter writeBytes(byte[] data, int offset, int length) {
+        if (length == 1 && (data[offset] & 0xFF) < OFFSET_SHORT_ITEM) {
+            emit(data[offset] & 0xFF);
+        } else {
+            writeHeader(length, OFFSET_SHORT_ITEM);
+            if (length > 0) {
+                emit(data, offset, length);
+            }
+        }
+        return this;
+    }
+
+    public RLPWriter writeString(String value) {
+        return writeBytes(value.getBytes());
+    }
+
+    public RLPWriter writeLong(long value) {
+        if (value < 0) {
+            throw new RuntimeException("negative numbers are not allowed");
+        }
+        if (value == 0) {
+            emit(OFFSET_SHORT_ITEM);
+        } else if (value < OFFSET_SHORT_ITEM) {
+            emit((int) value);
+        } else {
+            int length = byteLength(value);
+            header[0] = (byte) (OFFSET_SHORT_ITEM + length);
+            writeBigEndian(value, length, header, 1);
+            emit(header, 0, 1 + length);
+        }
+        return this;
+    }
+
+    public RLPWriter writeInt(int value) {
+        return writeLong(value);
+    }
+
+    /**
+     * @param value limbs least significant first, see {@link RLP#decodeUInt256(byte[], int, long[])}
+     */
+    public RLPWriter writeUInt256(long[] value) {
+        int size = RLP.encodeUInt256(value, uint256, 0);
+        emit(uint256, 0, size);
+        return this;
+    }
+
+    public RLPWriter writeBigInteger(BigInteger value) {
+        if (value.signum() < 0) {
+            throw new RuntimeException("negative numbers are not allowed");
+        }
+        if (value.bitLength() < Long.SIZE) {
+            return writeLong(value.longValue());
+        }
+        return writeBytes(asUnsignedByteArray(value));
+    }
+
+    /**
+     * Writes an element which is already RLP encoded, e.g. the output of {@link RLP#encode(Object)}
+     */
+    public RLPWriter writeEncoded(byte[] encoded) {
+        emit(encoded, 0, encoded.length);
+        return this;
+    }
+
+    /**
+     * Opens a list whose payload, i.e. the sum of the encoded sizes of its
+     * elements, is exactly payloadLength bytes
+     */
+    public RLPWriter startList(long payloadLength) {
+        if (depth == MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", MAX_DEPTH));
+        }
+        writeHeader(payloadLength, OFFSET_SHORT_LIST);
+        long end = written + payloadLength;
+        if (depth > 0 && end > listEnds[depth - 1]) {
+            throw new RuntimeException(String.format("List of %s bytes does not fit in the enclosing list (%s bytes left)",
+                    payloadLength, listEnds[depth - 1] - written));
+        }
+        listEnds[depth++] = end;
+        return this;
+    }
+
+    public RLPWriter endList() {
+        if (depth == 0) {
+            throw new RuntimeException("No RLP list to end");
+        }
+        long missing = listEnds[depth - 1] - written;
+        if (missing != 0) {
+            throw new RuntimeException(String.format("RLP list ended with %s bytes of declared payload missing", missing));
+        }
+        depth--;
+        return this;
+    }
+
+    /**
+     * Writes a list whose payload is produced by body. The size is unknown up front,
+     * so body is first run over an {@link RLPSizeCounter} and then over this writer;
+     * it must produce the same elements both times.
+     */
+    public RLPWriter writeList(Consumer<RLPWriter> body) {
+        RLPSizeCounter counter = new RLPSizeCounter();
+        body.accept(counter);
+        startList(counter.getBytesWritten());
+        body.accept(this);
+        return endList();
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public long getBytesWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of lists currently open
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return encoded size of {@link #writeLong(long)} for value
+     */
+    public static int calcLongSize(long value) {
+        return RLP.calcLongSize(value);
+    }
+
+    /**
+     * @return encoded size of {@link #writeBytes(byte[], int, int)} for the range
+     */
+    public static long calcBytesSize(byte[] data, int offset, int length) {
+        if (length == 1 && (data[offset] & 0xFF) < OFFSET_SHORT_ITEM) {
+            return 1;
+        }
+        return calcHeaderSize(length) + length;
+    }
+
+    /**
+     * @return encoded size of a list with the given payload length, prefix included
+     */
+    public static long calcListSize(long payloadLength) {
+        return calcHeaderSize(payloadLength) + payloadLength;
+    }
+
+    static int calcHeaderSize(long length) {
+        return length < SIZE_THRESHOLD ? 1 : 1 + byteLength(length);
+    }
+
+    private void writeHeader(long length, int offset) {
+        int headerLength;
+        if (length < SIZE_THRESHOLD) {
+            header[0] = (byte) (offset + length);
+            headerLength = 1;
+        } else {
+            int lengthOfLength = byteLength(length);
+            header[0] = (byte) (offset + SIZE_THRESHOLD - 1 + lengthOfLength);
+            writeBigEndian(length, lengthOfLength, header, 1);
+            headerLength = 1 + lengthOfLength;
+        }
+        emit(header, 0, headerLength);
+    }
+
+    /**
+     * Forgets open lists and the byte count, for writers reused on another message
+     */
+    void resetWriter() {
+        depth = 0;
+        written = 0;
+    }
+
+    /**
+     * Accounts for length bytes without handing them to {@link #writeRaw(byte[], int, int)}
+     */
+    void skipRaw(long length) {
+        checkRoom(length);
+        written += length;
+    }
+
+    private void emit(int b) {
+        checkRoom(1);
+        writeRaw(b);
+        written++;
+    }
+
+    private void emit(byte[] src, int offset, int length) {
+        checkRoom(length);
+        writeRaw(src, offset, length);
+        written += length;
+    }
+
+    private void checkRoom(long length) {
+        if (depth > 0 && written + length > listEnds[depth - 1]) {
+            throw new RuntimeException(String.format("RLP element of %s bytes exceeds the declared list payload (%s bytes left)",
+                    length, listEnds[depth - 1] - written));
+        }
+    }
+}
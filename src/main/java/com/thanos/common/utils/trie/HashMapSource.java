@@ -0,0 +1,35 @@
+package com.thanos.common.utils.trie;
+
+import com.thanos.common.utils.ByteArrayWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HashMapSource.java description：in-memory {@link KeyValueSource}, for tests and
+ * for tries that are only used to compute a root.
+ */
+public class HashMapSource implements KeyValueSource {
+
+    private final ConcurrentHashMap<ByteArrayWrapper, byte[]> storage = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] get(byte[] key) {
+        return storage.get(new ByteArrayWrapper(key));
+    }
+
+    @Override
+    public void updateBatch(Map<ByteArrayWrapper, byte[]> rows) {
+        for (Map.Entry<ByteArrayWrapper, byte[]> row : rows.entrySet()) {
+            if (row.getValue() == null) {
+                storage.remove(row.getKey());
+            } else {
+                storage.put(row.getKey(), row.getValue());
+            }
+        }
+    }
+
+    public int size() {
+        return storage.size();
+    }
+}
@@ -0,0 +1,23 @@
+package com.thanos.common.utils.trie;
+
+import com.thanos.common.utils.ByteArrayWrapper;
+
+import java.util.Map;
+
+/**
+ * KeyValueSource.java description：storage backend of {@link PatriciaTrie}, trie nodes
+ * are stored under their keccak-256 hash. Implementations wrap the node database,
+ * {@link HashMapSource} keeps everything in memory.
+ */
+public interface KeyValueSource {
+
+    /**
+     * @return the value stored under key, null if there is none
+     */
+    byte[] get(byte[] key);
+
+    /**
+     * Writes all rows at once, a null value deletes its key
+     */
+    void updateBatch(Map<ByteArrayWrapper, byte[]> rows);
+}
@@ -0,0 +1,559 @@
+package com.thanos.common.utils.trie;
+
+import com.thanos.common.utils.ByteArrayWrapper;
+import com.thanos.common.utils.CompactEncoder;
+import com.thanos.common.utils.HashUtil;
+import com.thanos.common.utils.rlp.RLP;
+import com.thanos.common.utils.rlp.RLPElement;
+import com.thanos.common.utils.rlp.RLPItem;
+import com.thanos.common.utils.rlp.RLPList;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static com.thanos.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
+import static java.util.Arrays.copyOfRange;
+
+/**
+ * PatriciaTrie.java description：Merkle Patricia trie with the ethereum node layout:
+ * branch nodes of 16 children and a value, leaf and extension nodes keyed by a
+ * {@link CompactEncoder} packed path, every node encoded with {@link RLP} and
+ * referenced by its keccak-256 hash, or inlined in its parent when its encoding
+ * is shorter than a hash. The root of an empty trie is {@link HashUtil#EMPTY_TRIE_HASH}.
+ * <p>
+ * Nodes read from the {@link KeyValueSource} are decoded once and kept in an LRU
+ * cache. Updates are copy on write: the nodes on the path to a changed key are
+ * replaced by new dirty ones, so cached nodes are never modified. Nothing is hashed
+ * until {@link #getRootHash()} or {@link #commit()}, and then only the dirty nodes,
+ * with the subtrees below the first levels of branches hashed in parallel.
+ * {@link #commit()} writes the dirty nodes in one batch. Stale nodes are not
+ * deleted from the source.
+ * <p>
+ * Not thread safe.
+ */
+public class PatriciaTrie {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    // subtrees under the branches of this depth or less are hashed in parallel
+    public static final int DEFAULT_PARALLEL_DEPTH = 2;
+
+    private static final int HASH_LENGTH = HashUtil.HASH_256_LENGTH;
+
+    private static final byte TERMINATOR = 16;
+
+    private static final byte[] EMPTY_ELEMENT = RLP.encodeElement(EMPTY_BYTE_ARRAY);
+
+    private static final int BRANCH = 0;
+
+    private static final int LEAF = 1;
+
+    private static final int EXTENSION = 2;
+
+    private final KeyValueSource source;
+
+    private final NodeCache cache;
+
+    private final ForkJoinPool pool;
+
+    private final int parallelDepth;
+
+    // null when empty, the hash of a stored root or a Node
+    private Object root;
+
+    public PatriciaTrie(KeyValueSource source) {
+        this(source, null);
+    }
+
+    public PatriciaTrie(KeyValueSource source, byte[] rootHash) {
+        this(source, rootHash, DEFAULT_CACHE_SIZE, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_DEPTH);
+    }
+
+    public PatriciaTrie(KeyValueSource source, byte[] rootHash, int cacheSize, ForkJoinPool pool, int parallelDepth) {
+        this.source = source;
+        this.cache = new NodeCache(cacheSize);
+        this.pool = pool;
+        this.parallelDepth = parallelDepth;
+        setRoot(rootHash);
+    }
+
+    /**
+     * Moves to another committed root, uncommitted changes are dropped
+     *
+     * @param rootHash null or {@link HashUtil#EMPTY_TRIE_HASH} for an empty trie
+     */
+    public void setRoot(byte[] rootHash) {
+        if (rootHash == null || Arrays.equals(rootHash, HashUtil.EMPTY_TRIE_HASH)) {
+            root = null;
+        } else {
+            root = rootHash.clone();
+        }
+    }
+
+    /**
+     * @return value of key, null if absent
+     */
+    public byte[] get(byte[] key) {
+        byte[] nibbles = toNibbles(key);
+        int idx = 0;
+        Object ref = root;
+        while (ref != null) {
+            Node node = resolve(ref);
+            if (node.type == BRANCH) {
+                if (idx == nibbles.length) {
+                    return node.value;
+                }
+                ref = node.children[nibbles[idx++]];
+            } else {
+                int common = commonPrefix(node.path, nibbles, idx);
+                if (common != node.path.length) {
+                    return null;
+                }
+                idx += common;
+                if (node.type == LEAF) {
+                    return idx == nibbles.length ? node.value : null;
+                }
+                ref = node.children[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value of key, an empty or null value deletes it
+     */
+    public void put(byte[] key, byte[] value) {
+        if (value == null || value.length == 0) {
+            delete(key);
+            return;
+        }
+        root = insert(root, toNibbles(key), 0, value);
+    }
+
+    public void delete(byte[] key) {
+        root = delete(root, toNibbles(key), 0);
+    }
+
+    /**
+     * @return true if the trie has changes not committed yet
+     */
+    public boolean isDirty() {
+        return root instanceof Node && ((Node) root).dirty;
+    }
+
+    /**
+     * Hashes the dirty nodes, without writing them
+     */
+    public byte[] getRootHash() {
+        if (root == null) {
+            return HashUtil.EMPTY_TRIE_HASH.clone();
+        }
+        if (root instanceof byte[]) {
+            return ((byte[]) root).clone();
+        }
+        Node node = (Node) root;
+        if (node.encoded == null) {
+            if (parallelDepth > 0) {
+                pool.invoke(new EncodeTask(node, 0));
+            } else {
+                encode(node);
+            }
+        }
+        // the root is referenced by hash even when its encoding is shorter
+        return node.hash != null ? node.hash.clone() : HashUtil.sha3(node.encoded);
+    }
+
+    /**
+     * Hashes the dirty nodes and writes them to the source in one batch
+     *
+     * @return the new root hash
+     */
+    public byte[] commit() {
+        byte[] rootHash = getRootHash();
+        if (isDirty()) {
+            Node node = (Node) root;
+            Map<ByteArrayWrapper, byte[]> batch = new HashMap<>();
+            collectDirty(node, batch);
+            if (node.hash == null) {
+                batch.put(new ByteArrayWrapper(rootHash), node.encoded);
+                cache.put(rootHash, node);
+            }
+            source.updateBatch(batch);
+        }
+        if (root != null) {
+            // committed nodes are reachable from the cache and the source
+            root = rootHash;
+        }
+        return rootHash.clone();
+    }
+
+    private Node resolve(Object ref) {
+        if (ref instanceof Node) {
+            return (Node) ref;
+        }
+        byte[] hash = (byte[]) ref;
+        Node node = cache.get(hash);
+        if (node == null) {
+            byte[] encoded = source.get(hash);
+            if (encoded == null) {
+                throw new RuntimeException("Trie node not found: " + Hex.toHexString(hash));
+            }
+            node = decode((RLPList) RLP.decode2(encoded).get(0), encoded);
+            if (encoded.length >= HASH_LENGTH) {
+                node.hash = hash;
+            }
+            cache.put(hash, node);
+        }
+        return node;
+    }
+
+    private Object insert(Object ref, byte[] key, int idx, byte[] value) {
+        if (ref == null) {
+            return Node.leaf(copyOfRange(key, idx, key.length), value);
+        }
+        Node node = resolve(ref);
+        if (node.type == BRANCH) {
+            Object[] children = node.children.clone();
+            if (idx == key.length) {
+                return Node.branch(children, value);
+            }
+            children[key[idx]] = insert(children[key[idx]], key, idx + 1, value);
+            return Node.branch(children, node.value);
+        }
+
+        byte[] path = node.path;
+        int common = commonPrefix(path, key, idx);
+        if (common == path.length) {
+            if (node.type == EXTENSION) {
+                return Node.extension(path, insert(node.children[0], key, idx + common, value));
+            }
+            if (idx + common == key.length) {
+                return Node.leaf(path, value);
+            }
+        }
+
+        // split into a branch at the first differing nibble
+        Object[] children = new Object[16];
+        byte[] branchValue = null;
+        if (common == path.length) {
+            branchValue = node.value;
+        } else if (node.type == LEAF) {
+            children[path[common]] = Node.leaf(copyOfRange(path, common + 1, path.length), node.value);
+        } else if (common + 1 == path.length) {
+            children[path[common]] = node.children[0];
+        } else {
+            children[path[common]] = Node.extension(copyOfRange(path, common + 1, path.length), node.children[0]);
+        }
+        int rest = idx + common;
+        if (rest == key.length) {
+            branchValue = value;
+        } else {
+            children[key[rest]] = Node.leaf(copyOfRange(key, rest + 1, key.length), value);
+        }
+        Node branch = Node.branch(children, branchValue);
+        return common == 0 ? branch : Node.extension(copyOfRange(path, 0, common), branch);
+    }
+
+    /**
+     * @return ref itself when key is absent
+     */
+    private Object delete(Object ref, byte[] key, int idx) {
+        if (ref == null) {
+            return null;
+        }
+        Node node = resolve(ref);
+        if (node.type == LEAF) {
+            boolean found = commonPrefix(node.path, key, idx) == node.path.length
+                    && idx + node.path.length == key.length;
+            return found ? null : ref;
+        }
+        if (node.type == EXTENSION) {
+            if (commonPrefix(node.path, key, idx) != node.path.length) {
+                return ref;
+            }
+            Object child = delete(node.children[0], key, idx + node.path.length);
+            return child == node.children[0] ? ref : extend(node.path, child);
+        }
+
+        Object[] children = node.children;
+        byte[] value = node.value;
+        if (idx == key.length) {
+            if (value == null) {
+                return ref;
+            }
+            value = null;
+            children = children.clone();
+        } else {
+            Object child = delete(children[key[idx]], key, idx + 1);
+            if (child == children[key[idx]]) {
+                return ref;
+            }
+            children = children.clone();
+            children[key[idx]] = child;
+        }
+
+        int count = 0;
+        int last = -1;
+        for (int i = 0; i < 16; i++) {
+            if (children[i] != null) {
+                count++;
+                last = i;
+            }
+        }
+        if (count + (value == null ? 0 : 1) > 1) {
+            return Node.branch(children, value);
+        }
+        if (count == 0) {
+            return value == null ? null : Node.leaf(EMPTY_BYTE_ARRAY, value);
+        }
+        return extend(new byte[]{(byte) last}, children[last]);
+    }
+
+    /**
+     * @return node reached through the path prefix then childRef,
+     * a leaf or extension child absorbs the prefix
+     */
+    private Object extend(byte[] prefix, Object childRef) {
+        if (childRef == null) {
+            return null;
+        }
+        Node child = resolve(childRef);
+        if (child.type == BRANCH) {
+            return Node.extension(prefix, childRef);
+        }
+        byte[] path = new byte[prefix.length + child.path.length];
+        System.arraycopy(prefix, 0, path, 0, prefix.length);
+        System.arraycopy(child.path, 0, path, prefix.length, child.path.length);
+        return child.type == LEAF ? Node.leaf(path, child.value) : Node.extension(path, child.children[0]);
+    }
+
+    /**
+     * Gathers the hashed dirty nodes, and refers to hashed children by hash so
+     * that committed nodes only hold their inlined children
+     */
+    private void collectDirty(Node node, Map<ByteArrayWrapper, byte[]> batch) {
+        node.dirty = false;
+        Object[] children = node.children;
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] instanceof Node) {
+                    Node child = (Node) children[i];
+                    if (child.dirty) {
+                        collectDirty(child, batch);
+                    }
+                    if (child.hash != null) {
+                        children[i] = child.hash;
+                    }
+                }
+            }
+        }
+        if (node.hash != null) {
+            batch.put(new ByteArrayWrapper(node.hash), node.encoded);
+            cache.put(node.hash, node);
+        }
+    }
+
+    private static void encode(Node node) {
+        if (node.encoded != null) {
+            return;
+        }
+        byte[][] elements;
+        if (node.type == BRANCH) {
+            elements = new byte[17][];
+            for (int i = 0; i < 16; i++) {
+                elements[i] = reference(node.children[i]);
+            }
+            elements[16] = node.value == null ? EMPTY_ELEMENT : RLP.encodeElement(node.value);
+        } else if (node.type == LEAF) {
+            byte[] path = Arrays.copyOf(node.path, node.path.length + 1);
+            path[node.path.length] = TERMINATOR;
+            elements = new byte[][]{
+                    RLP.encodeElement(CompactEncoder.packNibbles(path)),
+                    RLP.encodeElement(node.value)};
+        } else {
+            elements = new byte[][]{
+                    RLP.encodeElement(CompactEncoder.packNibbles(node.path)),
+                    reference(node.children[0])};
+        }
+        node.encoded = RLP.encodeList(elements);
+        if (node.encoded.length >= HASH_LENGTH) {
+            node.hash = HashUtil.sha3(node.encoded);
+        }
+    }
+
+    private static byte[] reference(Object ref) {
+        if (ref == null) {
+            return EMPTY_ELEMENT;
+        }
+        if (ref instanceof byte[]) {
+            return RLP.encodeElement((byte[]) ref);
+        }
+        Node child = (Node) ref;
+        encode(child);
+        return child.hash != null ? RLP.encodeElement(child.hash) : child.encoded;
+    }
+
+    private static Node decode(RLPList list, byte[] encoded) {
+        Node node;
+        if (list.size() == 17) {
+            Object[] children = new Object[16];
+            for (int i = 0; i < 16; i++) {
+                children[i] = decodeReference(list.get(i));
+            }
+            node = new Node(BRANCH, null, children, list.get(16).getRLPData());
+        } else if (list.size() == 2) {
+            byte[] packedPath = list.get(0).getRLPData();
+            byte[] path = CompactEncoder.unpackToNibbles(packedPath);
+            if (CompactEncoder.hasTerminator(packedPath)) {
+                node = new Node(LEAF, copyOfRange(path, 0, path.length - 1), null, list.get(1).getRLPData());
+            } else {
+                node = new Node(EXTENSION, path, new Object[]{decodeReference(list.get(1))}, null);
+            }
+        } else {
+            throw new RuntimeException(String.format("Invalid trie node of %s elements", list.size()));
+        }
+        node.encoded = encoded;
+        node.dirty = false;
+        return node;
+    }
+
+    private static Object decodeReference(RLPElement element) {
+        if (element instanceof RLPList) {
+            // inlined node
+            return decode((RLPList) element, element.getRLPData());
+        }
+        // null for an empty slot
+        return ((RLPItem) element).getRLPData();
+    }
+
+    private static byte[] toNibbles(byte[] key) {
+        byte[] nibbles = new byte[key.length << 1];
+        for (int i = 0; i < key.length; i++) {
+            nibbles[i << 1] = (byte) ((key[i] >> 4) & 0x0F);
+            nibbles[(i << 1) + 1] = (byte) (key[i] & 0x0F);
+        }
+        return nibbles;
+    }
+
+    private static int commonPrefix(byte[] path, byte[] key, int idx) {
+        int max = Math.min(path.length, key.length - idx);
+        int i = 0;
+        while (i < max && path[i] == key[idx + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+
+        final int type;
+
+        // nibbles of a leaf or extension
+        final byte[] path;
+
+        // 16 children of a branch, the child of an extension; null, hash or Node each
+        final Object[] children;
+
+        // value of a leaf or branch, null if none
+        final byte[] value;
+
+        // memoized RLP, null until hashed
+        byte[] encoded;
+
+        // keccak-256 of encoded when it isn't inlined in the parent
+        byte[] hash;
+
+        boolean dirty = true;
+
+        Node(int type, byte[] path, Object[] children, byte[] value) {
+            this.type = type;
+            this.path = path;
+            this.children = children;
+            this.value = value;
+        }
+
+        static Node branch(Object[] children, byte[] value) {
+            return new Node(BRANCH, null, children, value);
+        }
+
+        static Node leaf(byte[] path, byte[] value) {
+            return new Node(LEAF, path, null, value);
+        }
+
+        static Node extension(byte[] path, Object child) {
+            return new Node(EXTENSION, path, new Object[]{child}, null);
+        }
+    }
+
+    private class EncodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+
+        private final int depth;
+
+        EncodeTask(Node node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            encodeTree(node, depth);
+        }
+
+        private void encodeTree(Node node, int depth) {
+            if (node.encoded != null) {
+                return;
+            }
+            if (node.type == EXTENSION && node.children[0] instanceof Node) {
+                encodeTree((Node) node.children[0], depth);
+            } else if (node.type == BRANCH && depth < parallelDepth) {
+                List<EncodeTask> tasks = new ArrayList<>(16);
+                for (Object child : node.children) {
+                    if (child instanceof Node && ((Node) child).encoded == null) {
+                        tasks.add(new EncodeTask((Node) child, depth + 1));
+                    }
+                }
+                if (tasks.size() > 1) {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            }
+            encode(node);
+        }
+    }
+
+    private static final class NodeCache extends LinkedHashMap<ByteArrayWrapper, Node> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        NodeCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        Node get(byte[] hash) {
+            return get(new ByteArrayWrapper(hash));
+        }
+
+        void put(byte[] hash, Node node) {
+            put(new ByteArrayWrapper(hash), node);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Node> eldest) {
+            return size() > capacity;
+        }
+    }
+}